@@ -0,0 +1,19 @@
+package anhembi.crud.cache;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class CacheStats {
+    long hits;
+    long misses;
+    long evictions;
+    long expirations;
+    int size;
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
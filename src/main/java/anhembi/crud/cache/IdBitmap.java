@@ -0,0 +1,110 @@
+package anhembi.crud.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * One bit per id telling which rows exist, so lookups of ids that are not there can be answered without a query.
+ * Auto-increment ids are dense, so a plain bitmap is exact and smaller than a Bloom filter of the same set
+ * (1M ids take 125 KB). Ids above the largest one seen by {@link #load(Collection)}, e.g. inserted by another
+ * process, are always reported as possibly existing, even after this process saved a higher id. A bit found to be
+ * wrong by a query is cleared, so a stale bitmap only costs queries.
+ */
+public class IdBitmap {
+    private long[] words = new long[0];
+    private int maxId;
+    private int loadedMaxId;
+    private int count;
+    private boolean ready;
+    private long adds;
+
+    private long negativeHits;
+    private long positives;
+    private long falsePositives;
+
+    public synchronized void load(Collection<Integer> ids) {
+        int largest = ids.stream().mapToInt(Integer::intValue).max().orElse(0);
+        words = new long[Math.max(0, largest) / 64 + 1];
+        maxId = 0;
+        count = 0;
+        adds++;
+        for (int id : ids) {
+            set(id);
+        }
+        loadedMaxId = maxId;
+        ready = true;
+    }
+
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return false only when the id is known not to exist
+     */
+    public synchronized boolean mightExist(int id) {
+        // other processes insert above the loaded ids, local saves there don't make the range known
+        if (!ready || id > loadedMaxId) return true;
+        if (id > 0 && (words[id >>> 6] & (1L << id)) != 0) {
+            positives++;
+            return true;
+        }
+        negativeHits++;
+        return false;
+    }
+
+    public synchronized void add(int id) {
+        adds++;
+        if (ready) set(id);
+    }
+
+    public synchronized void remove(int id) {
+        if (!ready || id <= 0 || id > maxId) return;
+        long bit = 1L << id;
+        if ((words[id >>> 6] & bit) != 0) {
+            words[id >>> 6] &= ~bit;
+            count--;
+        }
+    }
+
+    /**
+     * Taken before a query whose empty result is passed to {@link #confirmMissing(int, long)}
+     */
+    public synchronized long missToken() {
+        return adds;
+    }
+
+    /**
+     * Called when a query finds no row for the id, a set bit was a false positive and is cleared. Ignored when an id
+     * was added since the token was taken, the query may have missed that row.
+     */
+    public synchronized void confirmMissing(int id, long missToken) {
+        if (missToken != adds || !ready || id <= 0 || id > maxId || (words[id >>> 6] & (1L << id)) == 0) return;
+        falsePositives++;
+        remove(id);
+    }
+
+    public synchronized NegativeCacheStats getStats() {
+        return NegativeCacheStats.builder()
+                .ids(count)
+                .memoryBytes((long) words.length * Long.BYTES)
+                .negativeHits(negativeHits)
+                .positives(positives)
+                .falsePositives(falsePositives)
+                .build();
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void set(int id) {
+        if (id <= 0) return;
+        int word = id >>> 6;
+        if (word >= words.length) words = Arrays.copyOf(words, Math.max(word + 1, words.length + (words.length >> 1)));
+        long bit = 1L << id;
+        if ((words[word] & bit) == 0) {
+            words[word] |= bit;
+            count++;
+        }
+        maxId = Math.max(maxId, id);
+    }
+}
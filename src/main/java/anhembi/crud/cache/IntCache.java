@@ -0,0 +1,225 @@
+package anhembi.crud.cache;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache keyed by primitive int ids, no {@code Integer} boxing on lookups.
+ * Entries expire after the TTL and the least recently referenced ones are evicted (CLOCK) once the size bound is hit.
+ * The table is split into segments with their own lock so concurrent readers of different ids rarely contend.
+ */
+public class IntCache<V> {
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public IntCache(int maxSize, Duration ttl) {
+        if (maxSize < 1) throw new IllegalArgumentException("Cache size must be positive, got " + maxSize);
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(16, maxSize / 64)));
+        this.segments = (Segment[]) new IntCache<?>.Segment[segmentCount];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        int perSegment = (maxSize + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public V get(int key) {
+        int hash = mix(key);
+        V value = segmentFor(hash).get(key, hash, System.nanoTime());
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Taken before loading a missing value, so {@link #putIfNotInvalidated} can tell a concurrent write happened
+     */
+    public long loadToken(int key) {
+        return segmentFor(mix(key)).invalidations();
+    }
+
+    public void put(int key, V value) {
+        int hash = mix(key);
+        segmentFor(hash).put(key, hash, value, System.nanoTime(), Long.MIN_VALUE);
+    }
+
+    /**
+     * Stores the loaded value unless the key's segment saw an invalidation since {@code token} was taken
+     */
+    public boolean putIfNotInvalidated(int key, V value, long token) {
+        int hash = mix(key);
+        return segmentFor(hash).put(key, hash, value, System.nanoTime(), token);
+    }
+
+    public void invalidate(int key) {
+        int hash = mix(key);
+        segmentFor(hash).invalidate(key, hash);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public CacheStats getStats() {
+        return CacheStats.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .evictions(evictions.sum())
+                .expirations(expirations.sum())
+                .size(size())
+                .build();
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    private final class Segment {
+        private final int maxSize;
+        private final int mask;
+        private final int[] keys;
+        private final Object[] values;
+        private final long[] expiresAt;
+        private final boolean[] referenced;
+        private int size;
+        private int hand;
+        private long invalidations;
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+            int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+            this.mask = capacity - 1;
+            this.keys = new int[capacity];
+            this.values = new Object[capacity];
+            this.expiresAt = new long[capacity];
+            this.referenced = new boolean[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V get(int key, int hash, long now) {
+            int slot = find(key, hash);
+            if (slot < 0) return null;
+            if (now - expiresAt[slot] >= 0) {
+                expirations.increment();
+                delete(slot);
+                return null;
+            }
+            referenced[slot] = true;
+            return (V) values[slot];
+        }
+
+        private synchronized boolean put(int key, int hash, V value, long now, long token) {
+            if (token != Long.MIN_VALUE && token != invalidations) return false;
+            int slot = find(key, hash);
+            if (slot < 0) {
+                if (size >= maxSize) evictOne();
+                slot = hash & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+            expiresAt[slot] = now + ttlNanos;
+            referenced[slot] = false;
+            return true;
+        }
+
+        private synchronized void invalidate(int key, int hash) {
+            invalidations++;
+            int slot = find(key, hash);
+            if (slot >= 0) delete(slot);
+        }
+
+        private synchronized void clear() {
+            invalidations++;
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized long invalidations() {
+            return invalidations;
+        }
+
+        private int find(int key, int hash) {
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) return slot;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void evictOne() {
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) & mask;
+                if (values[slot] == null) continue;
+                if (referenced[slot]) {
+                    referenced[slot] = false;
+                    continue;
+                }
+                delete(slot);
+                evictions.increment();
+                return;
+            }
+        }
+
+        /**
+         * Backward-shift deletion keeps linear probing chains intact without tombstones
+         */
+        private void delete(int slot) {
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == null) break;
+                int home = mix(keys[next]) & mask;
+                boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+                if (!stays) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    expiresAt[hole] = expiresAt[next];
+                    referenced[hole] = referenced[next];
+                    hole = next;
+                }
+            }
+            values[hole] = null;
+            size--;
+        }
+    }
+}
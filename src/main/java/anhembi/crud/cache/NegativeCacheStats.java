@@ -0,0 +1,24 @@
+package anhembi.crud.cache;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class NegativeCacheStats {
+    int ids;
+    long memoryBytes;
+    /**
+     * Lookups answered as missing without a query
+     */
+    long negativeHits;
+    long positives;
+    /**
+     * Ids the bitmap held that the query did not find, deleted by someone else since the load
+     */
+    long falsePositives;
+
+    public double getFalsePositiveRate() {
+        return positives == 0 ? 0 : (double) falsePositives / positives;
+    }
+}
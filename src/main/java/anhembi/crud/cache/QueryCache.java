@@ -0,0 +1,133 @@
+package anhembi.crud.cache;
+
+import anhembi.crud.index.Collation;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ids matched by a name search, keyed by the folded term and kept in least recently used order.
+ * Bounded by the total number of ids held rather than the number of terms, so a few broad searches cannot pin the memory.
+ * Writes invalidate the terms the written name contains and the terms whose result holds the written id.
+ */
+public class QueryCache {
+    private final int maxRows;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private int rows;
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public QueryCache(int maxRows, Duration ttl) {
+        if (maxRows < 1) throw new IllegalArgumentException("Cache size must be positive, got " + maxRows);
+        this.maxRows = maxRows;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * @return the sorted ids last found for the term, or null when the term is not cached
+     */
+    public synchronized int[] get(String term) {
+        if (Collation.hasLikeWildcards(term)) return null;
+        String key = Collation.fold(term);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt >= 0) {
+            expirations++;
+            misses++;
+            remove(key);
+            return null;
+        }
+        hits++;
+        return entry.ids;
+    }
+
+    /**
+     * Taken before running the search, so {@link #putIfNotInvalidated} can tell a write happened meanwhile
+     */
+    public synchronized long loadToken() {
+        return generation;
+    }
+
+    /**
+     * @param ids sorted ids the search found, kept as is and never modified
+     */
+    public synchronized boolean putIfNotInvalidated(String term, int[] ids, long token) {
+        if (token != generation || Collation.hasLikeWildcards(term) || ids.length > maxRows) return false;
+        String key = Collation.fold(term);
+        remove(key);
+        entries.put(key, new Entry(ids, System.nanoTime() + ttlNanos));
+        rows += ids.length;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (rows > maxRows) {
+            rows -= eldest.next().getValue().ids.length;
+            eldest.remove();
+            evictions++;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the results a write of {@code id} may have changed, {@code name} is null for deletes
+     */
+    public synchronized void invalidate(int id, String name) {
+        generation++;
+        String folded = name == null ? null : Collation.fold(name);
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            int[] ids = entry.getValue().ids;
+            if ((folded != null && folded.contains(entry.getKey())) || Arrays.binarySearch(ids, id) >= 0) {
+                rows -= ids.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        rows = 0;
+    }
+
+    public synchronized int rows() {
+        return rows;
+    }
+
+    public synchronized CacheStats getStats() {
+        return CacheStats.builder()
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .expirations(expirations)
+                .size(entries.size())
+                .build();
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) rows -= removed.ids.length;
+    }
+
+    private static final class Entry {
+        private final int[] ids;
+        private final long expiresAt;
+
+        private Entry(int[] ids, long expiresAt) {
+            this.ids = ids;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package anhembi.crud.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent calls for the same key share one execution: the first caller runs the loader,
+ * the ones arriving while it runs wait for and get the very same result.
+ * Nothing is kept once the execution ends, the next call runs the loader again.
+ * Results are handed to several callers, so loaders should return immutable values.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+                if (e.getCause() instanceof Error error) throw error;
+                throw e;
+            }
+        }
+        executions.increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            // waiting callers would hang on a future nobody completes
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    public SingleFlightStats getStats() {
+        return SingleFlightStats.builder()
+                .executions(executions.sum())
+                .coalesced(coalesced.sum())
+                .inFlight(inFlight.size())
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package anhembi.crud.cache;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class SingleFlightStats {
+    long executions;
+    /**
+     * Calls that waited for an execution already in flight instead of running their own
+     */
+    long coalesced;
+    int inFlight;
+}
@@ -4,12 +4,24 @@ package anhembi.crud.conn;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 public class ConnectionFactory {
+    /**
+     * The connection of the {@link UnitOfWork} open on this thread, if any, otherwise a new one
+     */
     public Connection getConnection() throws SQLException {
+        Connection bound = UnitOfWork.boundConnection(this);
+        return bound != null ? bound : openConnection();
+    }
+
+    protected Connection openConnection() throws SQLException {
         String url = "jdbc:mysql://localhost:3306/anime_store";
-        String username = "root";
-        String password = "root";
-        return  DriverManager.getConnection(url, username, password);
+        Properties properties = new Properties();
+        properties.setProperty("user", "root");
+        properties.setProperty("password", "root");
+        // lets the driver send addBatch/executeBatch inserts as multi-row INSERT statements
+        properties.setProperty("rewriteBatchedStatements", "true");
+        return  DriverManager.getConnection(url, properties);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package anhembi.crud.conn;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class PoolConfig {
+    @Builder.Default
+    int minIdle = 2;
+    @Builder.Default
+    int maxSize = 10;
+    @Builder.Default
+    long connectionTimeoutMillis = 30_000;
+    @Builder.Default
+    long idleTimeoutMillis = 600_000;
+    @Builder.Default
+    int validationTimeoutSeconds = 2;
+    /**
+     * How long a connection may stay borrowed before it is reported as a leak, 0 disables leak detection
+     */
+    @Builder.Default
+    long leakDetectionThresholdMillis = 60_000;
+    @Builder.Default
+    long housekeepingPeriodMillis = 30_000;
+}
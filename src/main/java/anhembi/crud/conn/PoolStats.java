@@ -0,0 +1,20 @@
+package anhembi.crud.conn;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class PoolStats {
+    int active;
+    int idle;
+    int total;
+    int waitingThreads;
+    long borrows;
+    double averageWaitMillis;
+    double maxWaitMillis;
+    long timeouts;
+    long leaksDetected;
+    long evicted;
+    long validationFailures;
+}
@@ -0,0 +1,307 @@
+package anhembi.crud.conn;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded connection pool behind the {@link ConnectionFactory} type. Connections handed out are proxies whose
+ * {@code close()} returns the physical connection to the pool instead of closing it.
+ */
+@Log4j2
+public class PooledConnectionFactory extends ConnectionFactory implements AutoCloseable {
+    private final ConnectionFactory delegate;
+    private final PoolConfig config;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+
+    public PooledConnectionFactory(PoolConfig config) {
+        this(new ConnectionFactory(), config);
+    }
+
+    public PooledConnectionFactory(ConnectionFactory delegate, PoolConfig config) {
+        if (config.getMaxSize() < 1 || config.getMinIdle() < 0 || config.getMinIdle() > config.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid pool size, min idle " + config.getMinIdle() + " max " + config.getMaxSize());
+        }
+        this.delegate = delegate;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = config.getHousekeepingPeriodMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected Connection openConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.getConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Timed out after " + config.getConnectionTimeoutMillis()
+                        + "ms waiting for a connection (active=" + borrowed.size() + ", idle=" + idle.size() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) pooled = open();
+            pooled.borrow(config.getLeakDetectionThresholdMillis() > 0);
+            borrowed.add(pooled);
+            borrows.increment();
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public PoolStats getStats() {
+        long count = borrows.sum();
+        return PoolStats.builder()
+                .active(borrowed.size())
+                .idle(idle.size())
+                .total(total.get())
+                .waitingThreads(permits.getQueueLength())
+                .borrows(count)
+                .averageWaitMillis(count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count)
+                .maxWaitMillis(maxWaitNanos.get() / 1_000_000.0)
+                .timeouts(timeouts.sum())
+                .leaksDetected(leaks.sum())
+                .evicted(evicted.sum())
+                .validationFailures(validationFailures.sum())
+                .build();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+        if (!borrowed.isEmpty()) {
+            log.warn("Closing pool with {} connection(s) still borrowed, they will be closed when returned", borrowed.size());
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = delegate.getConnection();
+        total.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isValid(pooled.physical)) return pooled;
+            validationFailures.increment();
+            log.warn("Discarding connection that failed validation on borrow");
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection physical) {
+        try {
+            return physical.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) return;
+        try {
+            if (closed || physicalClosed(pooled.physical) || total.get() > config.getMaxSize()) {
+                discard(pooled);
+                return;
+            }
+            try {
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } catch (SQLException e) {
+                log.warn("Discarding connection that could not be reset on return", e);
+                discard(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean physicalClosed(Connection physical) {
+        try {
+            return physical.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            log.debug("Error while closing pooled connection", e);
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    void housekeep() {
+        try {
+            detectLeaks();
+            evictIdle();
+            fillMinIdle();
+        } catch (RuntimeException e) {
+            log.error("Error while running connection pool housekeeping", e);
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = config.getLeakDetectionThresholdMillis();
+        if (threshold <= 0) return;
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > threshold) {
+                pooled.leakReported = true;
+                leaks.increment();
+                log.warn("Connection leak detected, borrowed {}ms ago and not returned", now - pooled.borrowedAt, pooled.borrowSite);
+            }
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && idle.size() > config.getMinIdle()) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.lastReturnedAt > config.getIdleTimeoutMillis() && idle.remove(pooled)) {
+                evicted.increment();
+                discard(pooled);
+            }
+        }
+    }
+
+    private void fillMinIdle() {
+        // idle connections hold no permit, so borrowed ones are only counted by the total
+        while (!closed && idle.size() < config.getMinIdle() && total.get() < config.getMaxSize() && permits.tryAcquire()) {
+            try {
+                PooledConnection pooled = open();
+                pooled.lastReturnedAt = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                log.warn("Could not open connection to keep the pool at its minimum idle size", e);
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private final class PooledConnection implements InvocationHandler {
+        private final Connection physical;
+        private Connection proxy;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        private volatile boolean returned;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private void borrow(boolean trackSite) {
+            borrowedAt = System.currentTimeMillis();
+            borrowSite = trackSite ? new Throwable("Connection borrowed here") : null;
+            leakReported = false;
+            returned = false;
+            proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    // a stale proxy must not hand back a connection that has since been borrowed again
+                    if (!returned && proxy == this.proxy) {
+                        returned = true;
+                        release(this);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || proxy != this.proxy || physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + physical;
+                }
+            }
+            if (returned || proxy != this.proxy) throw new SQLException("Connection has already been returned to the pool");
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package anhembi.crud.conn;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binds one connection of a {@link ConnectionFactory} to the current thread so repository calls made inside the
+ * scope share a single transaction and commit once:
+ * <pre>
+ * try (UnitOfWork work = UnitOfWork.begin(connectionFactory)) {
+ *     Producer producer = producerRepository.save(...).orElseThrow();
+ *     animeRepository.saveAll(...);
+ *     work.commit();
+ * }
+ * </pre>
+ * Closing without {@link #commit()} rolls back. Beginning again on the same thread and factory nests the unit on a
+ * savepoint, so an inner failure can be rolled back while the outer unit goes on.
+ * <p>
+ * Repositories that demarcate their own chunks (autocommit off, commit, rollback) keep working: inside a unit those
+ * calls move a savepoint instead of ending the transaction. Cache and index hooks registered with
+ * {@link #afterCommit(ConnectionFactory, Runnable)} run only once the outermost unit commits, so lookups answered
+ * from the in-memory indexes do not see the unit's own writes before that. Only the thread that began the unit uses
+ * its connection, work handed to other threads runs outside of it.
+ */
+@Log4j2
+public final class UnitOfWork implements AutoCloseable {
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+    private static final String CHUNK_SAVEPOINT = "unit_of_work_chunk";
+
+    private final ConnectionFactory connectionFactory;
+    private final UnitOfWork parent;
+    private final Connection physical;
+    private final Connection bound;
+    private final Savepoint savepoint;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean committed;
+    private boolean closed;
+    // savepoint standing in for the transaction a repository opened on the bound connection, only used on the root unit
+    private Savepoint chunk;
+
+    private UnitOfWork(ConnectionFactory connectionFactory, UnitOfWork parent, Connection physical, Savepoint savepoint) {
+        this.connectionFactory = connectionFactory;
+        this.parent = parent;
+        this.physical = physical;
+        this.savepoint = savepoint;
+        this.bound = parent == null ? bind(physical) : parent.bound;
+    }
+
+    public static UnitOfWork begin(ConnectionFactory connectionFactory) throws SQLException {
+        UnitOfWork current = CURRENT.get();
+        UnitOfWork unit;
+        if (current == null) {
+            Connection physical = connectionFactory.openConnection();
+            try {
+                physical.setAutoCommit(false);
+            } catch (SQLException e) {
+                physical.close();
+                throw e;
+            }
+            unit = new UnitOfWork(connectionFactory, null, physical, null);
+        } else if (current.connectionFactory == connectionFactory) {
+            unit = new UnitOfWork(connectionFactory, current, current.physical, current.physical.setSavepoint());
+        } else {
+            throw new IllegalStateException("A unit of work on another connection factory is already open on this thread");
+        }
+        CURRENT.set(unit);
+        return unit;
+    }
+
+    /**
+     * Runs {@code action} once the outermost unit on this thread commits, or right away when none is open for
+     * {@code connectionFactory}. Actions of a unit that rolls back are dropped.
+     */
+    public static void afterCommit(ConnectionFactory connectionFactory, Runnable action) {
+        UnitOfWork current = CURRENT.get();
+        if (current == null || current.connectionFactory != connectionFactory) {
+            action.run();
+        } else {
+            current.afterCommit.add(action);
+        }
+    }
+
+    public static boolean isActive(ConnectionFactory connectionFactory) {
+        UnitOfWork current = CURRENT.get();
+        return current != null && current.connectionFactory == connectionFactory;
+    }
+
+    static Connection boundConnection(ConnectionFactory connectionFactory) {
+        UnitOfWork current = CURRENT.get();
+        return current != null && current.connectionFactory == connectionFactory ? current.bound : null;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public void commit() throws SQLException {
+        checkCurrent();
+        if (committed) throw new IllegalStateException("Unit of work already committed");
+        if (parent != null) {
+            physical.releaseSavepoint(savepoint);
+            parent.afterCommit.addAll(afterCommit);
+        } else {
+            physical.commit();
+            runAfterCommit();
+        }
+        afterCommit.clear();
+        committed = true;
+    }
+
+    public void rollback() throws SQLException {
+        checkCurrent();
+        if (parent != null) {
+            physical.rollback(savepoint);
+        } else {
+            physical.rollback();
+        }
+        afterCommit.clear();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) return;
+        checkCurrent();
+        try {
+            if (!committed) rollback();
+        } finally {
+            closed = true;
+            if (parent != null) {
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+                try {
+                    physical.setAutoCommit(true);
+                } finally {
+                    physical.close();
+                }
+            }
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void checkCurrent() {
+        if (closed) throw new IllegalStateException("Unit of work already closed");
+        if (CURRENT.get() != this) throw new IllegalStateException("Only the innermost unit of work of its thread can be used");
+    }
+
+    private void runAfterCommit() {
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.error("After commit action failed", e);
+            }
+        }
+    }
+
+    /**
+     * The connection handed to repositories: close is a no-op and their own transaction demarcation is mapped to
+     * one savepoint, replaced on every commit
+     */
+    private Connection bind(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "getAutoCommit":
+                            return chunk == null;
+                        case "setAutoCommit":
+                            boolean autoCommit = (Boolean) args[0];
+                            if (!autoCommit && chunk == null) {
+                                chunk = physical.setSavepoint(CHUNK_SAVEPOINT);
+                            } else if (autoCommit && chunk != null) {
+                                physical.releaseSavepoint(chunk);
+                                chunk = null;
+                            }
+                            return null;
+                        case "commit":
+                            // SAVEPOINT with an existing name replaces it, one statement per chunk
+                            if (chunk != null) chunk = physical.setSavepoint(CHUNK_SAVEPOINT);
+                            return null;
+                        case "rollback":
+                            if (args != null && args.length == 1) break;
+                            if (chunk == null) throw new SQLException("Rollback requested in autocommit mode inside a unit of work");
+                            physical.rollback(chunk);
+                            return null;
+                        case "unwrap":
+                            if (args[0] == Connection.class) return proxy;
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "UnitOfWorkConnection[" + physical + "]";
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -4,7 +4,7 @@ package anhembi.crud.domain;
 import lombok.Builder;
 import lombok.Value;
 
-@Builder
+@Builder(toBuilder = true)
 @Value
 public class Anime {
     Integer id;
@@ -0,0 +1,62 @@
+package anhembi.crud.importer;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Position of the last committed block, written next to the input file after every commit
+ */
+@Value
+class Checkpoint {
+    static final Checkpoint START = new Checkpoint(0, 0, 0, 0, 0);
+
+    long offset;
+    long line;
+    long imported;
+    long rejected;
+    long producersCreated;
+
+    static Optional<Checkpoint> read(Path path) throws IOException {
+        if (!Files.exists(path)) return Optional.empty();
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return Optional.of(new Checkpoint(
+                    Long.parseLong(properties.getProperty("offset")),
+                    Long.parseLong(properties.getProperty("line")),
+                    Long.parseLong(properties.getProperty("imported")),
+                    Long.parseLong(properties.getProperty("rejected")),
+                    Long.parseLong(properties.getProperty("producersCreated"))));
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt checkpoint file " + path, e);
+        }
+    }
+
+    /**
+     * Written to a temporary file first and moved over the old one, so a crash leaves either checkpoint intact
+     */
+    void write(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("line", Long.toString(line));
+        properties.setProperty("imported", Long.toString(imported));
+        properties.setProperty("rejected", Long.toString(rejected));
+        properties.setProperty("producersCreated", Long.toString(producersCreated));
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
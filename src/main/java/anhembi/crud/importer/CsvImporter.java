@@ -0,0 +1,371 @@
+package anhembi.crud.importer;
+
+import anhembi.crud.conn.ConnectionFactory;
+import anhembi.crud.conn.UnitOfWork;
+import anhembi.crud.domain.Anime;
+import anhembi.crud.domain.Producer;
+import anhembi.crud.index.Collation;
+import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.BatchResult;
+import anhembi.crud.repository.ProducerRepository;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Loads animes from a delimited file with the columns {@code name, episodes, producer}, producers given by name and
+ * created when missing. A reader thread cuts the file into blocks at line ends, parser threads turn blocks into rows
+ * and the calling thread writes them in file order, one transaction per block with batched inserts.
+ * <p>
+ * Rows that cannot be parsed or written go to {@code <file>.rejects} with their line number and reason. After every
+ * committed block the position is saved to {@code <file>.checkpoint}, an interrupted import started again continues
+ * after the last committed block. The checkpoint is deleted once the whole file is imported.
+ * <p>
+ * Rows skip the repositories' in-memory indexes while they are written. Indexes that were warm are reloaded once at
+ * the end.
+ */
+@Log4j2
+public class CsvImporter {
+    private static final int COLUMNS = 3;
+
+    private final ConnectionFactory connectionFactory;
+    private final ProducerRepository producerRepository;
+    private final AnimeRepository animeRepository;
+    private final ImportConfig config;
+
+    public CsvImporter(ConnectionFactory connectionFactory, ProducerRepository producerRepository,
+                       AnimeRepository animeRepository, ImportConfig config) {
+        if (config.getParserThreads() < 1 || config.getBlockSizeBytes() < 1 || config.getBatchSize() < 1) {
+            throw new IllegalArgumentException("Invalid import config " + config);
+        }
+        this.connectionFactory = connectionFactory;
+        this.producerRepository = producerRepository;
+        this.animeRepository = animeRepository;
+        this.config = config;
+    }
+
+    public ImportReport importFile(Path file) throws IOException {
+        char delimiter = config.getDelimiter() != null ? config.getDelimiter()
+                : file.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        Path checkpointPath = file.resolveSibling(file.getFileName() + ".checkpoint");
+        Path rejectPath = file.resolveSibling(file.getFileName() + ".rejects");
+        Checkpoint start = config.isResume() ? Checkpoint.read(checkpointPath).orElse(Checkpoint.START) : Checkpoint.START;
+        if (start.getOffset() > 0) log.info("Resuming import of '{}' after line {}", file, start.getLine());
+        Map<String, Integer> producerIds = loadProducerIds();
+
+        long startNanos = System.nanoTime();
+        long lastProgress = startNanos;
+        Checkpoint progress = start;
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(config.getParserThreads(), r -> {
+            Thread thread = new Thread(r, "csv-parser-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // bounded so the reader stays at most a few blocks ahead of the database
+        BlockingQueue<Future<ParsedBlock>> parsed = new ArrayBlockingQueue<>(config.getParserThreads() * 2);
+        Thread reader = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, start.getOffset() == 0 ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND)) {
+            Checkpoint from = start;
+            reader = new Thread(() -> readBlocks(channel, from, delimiter, parsers, parsed), "csv-reader");
+            reader.setDaemon(true);
+            reader.start();
+            ParsedBlock block;
+            while ((block = next(parsed)) != null) {
+                progress = load(block, progress, producerIds, rejects);
+                progress.write(checkpointPath);
+                long now = System.nanoTime();
+                if (now - lastProgress >= TimeUnit.MILLISECONDS.toNanos(config.getProgressIntervalMillis())) {
+                    lastProgress = now;
+                    log.info("Import of '{}' at line {}: {} imported, {} rejected, {} rows/s", file, progress.getLine(),
+                            progress.getImported(), progress.getRejected(), Math.round(rowsPerSecond(start, progress, now - startNanos)));
+                }
+            }
+        } finally {
+            if (reader != null) reader.interrupt();
+            parsers.shutdownNow();
+            // rows are written without the per-row index hooks, warm indexes are reloaded once for everything committed
+            producerRepository.finishImport();
+            animeRepository.finishImport();
+        }
+        Files.deleteIfExists(checkpointPath);
+
+        long elapsed = System.nanoTime() - startNanos;
+        ImportReport report = ImportReport.builder()
+                .resumedFromLine(start.getLine())
+                .imported(progress.getImported())
+                .rejected(progress.getRejected())
+                .producersCreated(progress.getProducersCreated())
+                .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsed))
+                .rowsPerSecond(rowsPerSecond(start, progress, elapsed))
+                .build();
+        log.info("Imported '{}': {}", file, report);
+        return report;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private Map<String, Integer> loadProducerIds() {
+        Map<String, Integer> producerIds = new HashMap<>();
+        try (Stream<Producer> producers = producerRepository.streamByName("")) {
+            producers.forEach(producer -> producerIds.putIfAbsent(Collation.fold(producer.getName()), producer.getId()));
+        }
+        log.info("Loaded {} producers for the import", producerIds.size());
+        return producerIds;
+    }
+
+    private static ParsedBlock next(BlockingQueue<Future<ParsedBlock>> parsed) throws IOException {
+        try {
+            return parsed.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for parsed rows", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Could not read the import file", e.getCause());
+        }
+    }
+
+    private static double rowsPerSecond(Checkpoint start, Checkpoint progress, long elapsedNanos) {
+        long rows = progress.getImported() + progress.getRejected() - start.getImported() - start.getRejected();
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Cuts the file into blocks ending at a line break and hands them to the parsers, the futures are queued in file
+     * order and a null block marks the end
+     */
+    private void readBlocks(FileChannel channel, Checkpoint start, char delimiter, ExecutorService parsers,
+                            BlockingQueue<Future<ParsedBlock>> parsed) {
+        try {
+            try {
+                channel.position(start.getOffset());
+                long offset = start.getOffset();
+                long line = start.getLine();
+                ByteBuffer buffer = ByteBuffer.allocate(config.getBlockSizeBytes());
+                boolean eof = false;
+                while (!eof) {
+                    eof = channel.read(buffer) < 0;
+                    if (!eof && buffer.hasRemaining()) continue;
+                    int end = eof ? buffer.position() : lastLineBreak(buffer) + 1;
+                    if (end == 0) {
+                        if (eof) break;
+                        // a single line longer than the buffer
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                        continue;
+                    }
+                    Block block = new Block(Arrays.copyOf(buffer.array(), end), offset, line, offset == 0 && config.isHeader());
+                    parsed.put(parsers.submit(() -> parse(block, delimiter)));
+                    offset += end;
+                    line += lineCount(block.getBytes());
+                    buffer.flip().position(end);
+                    buffer.compact();
+                }
+            } catch (IOException | RuntimeException e) {
+                parsed.put(CompletableFuture.failedFuture(e));
+                return;
+            }
+            parsed.put(CompletableFuture.completedFuture(null));
+        } catch (InterruptedException e) {
+            // the loader gave up, nobody is waiting for more blocks
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int lastLineBreak(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        for (int i = buffer.position() - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static long lineCount(byte[] bytes) {
+        long lines = 0;
+        for (byte b : bytes) {
+            if (b == '\n') lines++;
+        }
+        // last line of the file without a trailing line break
+        if (bytes.length > 0 && bytes[bytes.length - 1] != '\n') lines++;
+        return lines;
+    }
+
+    private static ParsedBlock parse(Block block, char delimiter) {
+        byte[] bytes = block.getBytes();
+        List<Row> rows = new ArrayList<>();
+        List<Reject> rejects = new ArrayList<>();
+        long line = block.getFirstLine();
+        int from = 0;
+        // the byte order mark some editors put at the start of UTF-8 files
+        if (block.getOffset() == 0 && bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            from = 3;
+        }
+        while (from < bytes.length) {
+            int to = from;
+            while (to < bytes.length && bytes[to] != '\n') to++;
+            int length = to - from;
+            if (length > 0 && bytes[to - 1] == '\r') length--;
+            line++;
+            String text = new String(bytes, from, length, StandardCharsets.UTF_8);
+            from = to + 1;
+            if (text.isBlank() || (block.isHeader() && line == 1)) continue;
+            parseRow(text, line, delimiter, rows, rejects);
+        }
+        return new ParsedBlock(rows, rejects, block.getOffset() + bytes.length, line);
+    }
+
+    private static void parseRow(String text, long line, char delimiter, List<Row> rows, List<Reject> rejects) {
+        List<String> fields;
+        try {
+            fields = CsvLine.split(text, delimiter);
+        } catch (IllegalArgumentException e) {
+            rejects.add(new Reject(line, e.getMessage(), text));
+            return;
+        }
+        if (fields.size() != COLUMNS) {
+            rejects.add(new Reject(line, "expected " + COLUMNS + " fields, got " + fields.size(), text));
+            return;
+        }
+        String name = fields.get(0);
+        String producer = fields.get(2);
+        if (name.isEmpty() || producer.isEmpty()) {
+            rejects.add(new Reject(line, name.isEmpty() ? "name is empty" : "producer is empty", text));
+            return;
+        }
+        int episodes;
+        try {
+            episodes = Integer.parseInt(fields.get(1));
+        } catch (NumberFormatException e) {
+            rejects.add(new Reject(line, "episodes is not a number", text));
+            return;
+        }
+        if (episodes < 0) {
+            rejects.add(new Reject(line, "episodes is negative", text));
+            return;
+        }
+        rows.add(new Row(line, name, episodes, producer, text));
+    }
+
+    /**
+     * Writes one block in one transaction: missing producers first, then the animes. Producer ids created here only
+     * join the lookup table once the block committed
+     */
+    private Checkpoint load(ParsedBlock block, Checkpoint progress, Map<String, Integer> producerIds, BufferedWriter rejectWriter)
+            throws IOException {
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (Row row : block.getRows()) {
+            String key = Collation.fold(row.getProducer());
+            if (!producerIds.containsKey(key)) missing.putIfAbsent(key, row.getProducer());
+        }
+        Map<String, Integer> created = new HashMap<>();
+        List<Reject> rejects = new ArrayList<>(block.getRejects());
+        long imported = 0;
+        try (UnitOfWork work = UnitOfWork.begin(connectionFactory)) {
+            if (!missing.isEmpty()) {
+                List<Producer> producers = missing.values().stream().map(name -> Producer.builder().name(name).build()).toList();
+                for (BatchResult.Item<Producer> item : producerRepository.importAll(producers, config.getBatchSize()).getItems()) {
+                    if (item.isSuccess()) created.put(Collation.fold(item.getEntity().getName()), item.getEntity().getId());
+                }
+            }
+            List<Row> loadable = new ArrayList<>(block.getRows().size());
+            List<Anime> animes = new ArrayList<>(block.getRows().size());
+            for (Row row : block.getRows()) {
+                String key = Collation.fold(row.getProducer());
+                Integer producerId = producerIds.getOrDefault(key, created.get(key));
+                if (producerId == null) {
+                    rejects.add(new Reject(row.getLine(), "producer could not be created", row.getText()));
+                    continue;
+                }
+                loadable.add(row);
+                animes.add(Anime.builder().name(row.getName()).episodes(row.getEpisodes())
+                        .producer(Producer.builder().id(producerId).name(row.getProducer()).build()).build());
+            }
+            List<BatchResult.Item<Anime>> items = animes.isEmpty() ? List.of()
+                    : animeRepository.importAll(animes, config.getBatchSize()).getItems();
+            for (int i = 0; i < items.size(); i++) {
+                BatchResult.Item<Anime> item = items.get(i);
+                if (item.isSuccess()) {
+                    imported++;
+                } else {
+                    Row row = loadable.get(i);
+                    String reason = item.getError() == null ? "insert failed" : item.getError().getMessage();
+                    rejects.add(new Reject(row.getLine(), reason, row.getText()));
+                }
+            }
+            work.commit();
+        } catch (SQLException e) {
+            throw new IOException("Could not commit the rows up to line " + block.getLastLine() + ", the import can be resumed", e);
+        }
+        producerIds.putAll(created);
+        rejects.sort((a, b) -> Long.compare(a.getLine(), b.getLine()));
+        for (Reject reject : rejects) {
+            rejectWriter.write(reject.getLine() + "\t" + reject.getReason() + "\t" + reject.getText());
+            rejectWriter.newLine();
+        }
+        rejectWriter.flush();
+        return new Checkpoint(block.getEndOffset(), block.getLastLine(), progress.getImported() + imported,
+                progress.getRejected() + rejects.size(), progress.getProducersCreated() + created.size());
+    }
+
+    @Value
+    private static class Block {
+        byte[] bytes;
+        long offset;
+        /**
+         * Line number before the first line of the block
+         */
+        long firstLine;
+        boolean header;
+    }
+
+    @Value
+    private static class ParsedBlock {
+        List<Row> rows;
+        List<Reject> rejects;
+        long endOffset;
+        long lastLine;
+    }
+
+    @Value
+    private static class Row {
+        long line;
+        String name;
+        int episodes;
+        String producer;
+        String text;
+    }
+
+    @Value
+    private static class Reject {
+        long line;
+        String reason;
+        String text;
+    }
+}
@@ -0,0 +1,49 @@
+package anhembi.crud.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits one line of delimited text. Fields may be quoted with {@code "} to hold the delimiter, a doubled quote
+ * inside a quoted field is a literal quote. Quoted fields spanning lines are not supported.
+ */
+final class CsvLine {
+
+    private CsvLine() {
+    }
+
+    static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == delimiter) {
+                fields.add(wasQuoted ? field.toString() : field.toString().trim());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '"' && field.toString().isBlank()) {
+                field.setLength(0);
+                quoted = true;
+                wasQuoted = true;
+            } else if (wasQuoted && !Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("text after closing quote at column " + (i + 1));
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unbalanced quotes");
+        fields.add(wasQuoted ? field.toString() : field.toString().trim());
+        return fields;
+    }
+}
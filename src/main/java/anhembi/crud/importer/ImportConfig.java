@@ -0,0 +1,37 @@
+package anhembi.crud.importer;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ImportConfig {
+    /**
+     * Field separator, by default a tab for .tsv files and a comma for anything else
+     */
+    Character delimiter;
+    /**
+     * Whether the first line of the file holds column names
+     */
+    @Builder.Default
+    boolean header = true;
+    @Builder.Default
+    int parserThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Bytes read and parsed as one unit, also the granularity of the transactions and the checkpoint
+     */
+    @Builder.Default
+    int blockSizeBytes = 1 << 20;
+    /**
+     * Rows per JDBC batch inside a block
+     */
+    @Builder.Default
+    int batchSize = 1_000;
+    @Builder.Default
+    long progressIntervalMillis = 5_000;
+    /**
+     * Continue from the checkpoint file of an interrupted import instead of starting over
+     */
+    @Builder.Default
+    boolean resume = true;
+}
@@ -0,0 +1,21 @@
+package anhembi.crud.importer;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ImportReport {
+    /**
+     * Line the run started after, 0 unless it resumed from a checkpoint
+     */
+    long resumedFromLine;
+    long imported;
+    long rejected;
+    long producersCreated;
+    long elapsedMillis;
+    /**
+     * Imported and rejected rows of this run per second
+     */
+    double rowsPerSecond;
+}
@@ -0,0 +1,35 @@
+package anhembi.crud.index;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Folds names the way the default MySQL collation (utf8mb4_0900_ai_ci) compares them: accent and case insensitive
+ */
+public final class Collation {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private Collation() {
+    }
+
+    public static String fold(String name) {
+        if (name == null) return "";
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return whether the term contains characters LIKE treats as wildcards or escapes
+     */
+    public static boolean hasLikeWildcards(String term) {
+        return term.indexOf('%') >= 0 || term.indexOf('_') >= 0 || term.indexOf('\\') >= 0;
+    }
+
+    /**
+     * Escapes the LIKE wildcards so the term matches literally, e.g. before appending a {@code %} for a prefix match
+     */
+    public static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,109 @@
+package anhembi.crud.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ids of the rows referencing each parent id, e.g. anime ids by producer id, as sorted int arrays per parent.
+ * The parent of each row is kept in an int array indexed by the (dense, auto-increment) row id so moving or deleting
+ * a row finds its old parent without a second map.
+ */
+public class ForeignKeyIndex {
+    private static final int NO_PARENT = 0;
+
+    private final Map<Integer, SortedIntSet> childrenByParent = new HashMap<>();
+    private int[] parentById = new int[0];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @param parentIdsById parent id of each row id, parent ids must be positive
+     */
+    public void rebuild(Map<Integer, Integer> parentIdsById) {
+        lock.writeLock().lock();
+        try {
+            childrenByParent.clear();
+            int largest = parentIdsById.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            parentById = new int[Math.max(0, largest) + 1];
+            parentIdsById.forEach(this::add);
+            childrenByParent.values().forEach(SortedIntSet::trimToSize);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int id, int parentId) {
+        if (!ready) return;
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+            add(id, parentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return sorted ids of the rows referencing the parent, or null when the index is not loaded and SQL must be used
+     */
+    public int[] childrenOf(int parentId) {
+        if (!ready) return null;
+        lock.readLock().lock();
+        try {
+            SortedIntSet children = childrenByParent.get(parentId);
+            return children == null ? new int[0] : children.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of rows per parent id with at least one row, or null when the index is not loaded
+     */
+    public Map<Integer, Integer> counts() {
+        if (!ready) return null;
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> counts = new TreeMap<>();
+            childrenByParent.forEach((parentId, children) -> counts.put(parentId, children.size()));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void add(int id, int parentId) {
+        if (id <= 0 || parentId <= 0) return;
+        if (id >= parentById.length) parentById = Arrays.copyOf(parentById, Math.max(id + 1, parentById.length + (parentById.length >> 1)));
+        parentById[id] = parentId;
+        childrenByParent.computeIfAbsent(parentId, key -> new SortedIntSet()).add(id);
+    }
+
+    private void removeExisting(int id) {
+        if (id <= 0 || id >= parentById.length || parentById[id] == NO_PARENT) return;
+        int parentId = parentById[id];
+        parentById[id] = NO_PARENT;
+        SortedIntSet children = childrenByParent.get(parentId);
+        if (children.remove(id) && children.isEmpty()) childrenByParent.remove(parentId);
+    }
+}
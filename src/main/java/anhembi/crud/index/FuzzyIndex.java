@@ -0,0 +1,287 @@
+package anhembi.crud.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo-tolerant lookup over the distinct folded names kept in a sorted array. A search walks the array as if it were a
+ * trie: names sharing a prefix are one contiguous range, the Levenshtein row of the prefix is computed once for the
+ * whole range and the range is dropped as soon as every cell of the row exceeds the allowed distance.
+ * Names added since the last merge sit in a small sorted overlay, removed ones stay in the array until the next merge.
+ */
+public class FuzzyIndex {
+    private static final Comparator<FuzzyMatch> WORST_FIRST = Comparator.comparingInt(FuzzyMatch::getDistance)
+            .thenComparing(match -> Collation.fold(match.getName()))
+            .thenComparingInt(FuzzyMatch::getId)
+            .reversed();
+    private static final int MAX_PENDING_WRITES = 1_024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    private String[] keys = new String[0];
+    private final TreeSet<String> added = new TreeSet<>();
+    private int removedKeys;
+    private final Map<String, SortedIntSet> idsByKey = new HashMap<>();
+    private final Map<Integer, String> namesById = new HashMap<>();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return namesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuild(Map<Integer, String> namesById) {
+        lock.writeLock().lock();
+        try {
+            this.namesById.clear();
+            idsByKey.clear();
+            keys = new String[0];
+            added.clear();
+            namesById.forEach(this::add);
+            merge();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int id, String name) {
+        if (!ready) return;
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+            add(id, name);
+            if (added.size() + removedKeys >= MAX_PENDING_WRITES) merge();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+            if (added.size() + removedKeys >= MAX_PENDING_WRITES) merge();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return up to {@code limit} names within {@code maxDistance} edits of the term, closest first
+     */
+    public List<FuzzyMatch> search(String term, int maxDistance, int limit) {
+        if (maxDistance < 0) throw new IllegalArgumentException("Max distance can not be negative, got " + maxDistance);
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive, got " + limit);
+        Search search = new Search(Collation.fold(term).toCharArray(), maxDistance, limit);
+        lock.readLock().lock();
+        try {
+            if (keys.length > 0) walk(search, 0, keys.length, 0);
+            int[][] rows = {new int[search.query.length + 1], new int[search.query.length + 1]};
+            for (String key : added) {
+                offer(search, key, distance(key, search.query, search.radius, rows));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<FuzzyMatch> matches = new ArrayList<>(search.best);
+        matches.sort(WORST_FIRST.reversed());
+        return matches;
+    }
+
+    /**
+     * Levenshtein distance of the folded strings, or {@code max + 1} when it is larger than {@code max}
+     */
+    public static int distance(String a, String b, int max) {
+        char[] query = Collation.fold(b).toCharArray();
+        return distance(Collation.fold(a), query, max, new int[][]{new int[query.length + 1], new int[query.length + 1]});
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void add(int id, String name) {
+        String folded = Collation.fold(name);
+        namesById.put(id, name);
+        SortedIntSet ids = idsByKey.get(folded);
+        if (ids == null) {
+            ids = new SortedIntSet();
+            idsByKey.put(folded, ids);
+            if (Arrays.binarySearch(keys, folded) >= 0) {
+                removedKeys--;
+            } else {
+                added.add(folded);
+            }
+        }
+        ids.add(id);
+    }
+
+    private void removeExisting(int id) {
+        String name = namesById.remove(id);
+        if (name == null) return;
+        String folded = Collation.fold(name);
+        SortedIntSet ids = idsByKey.get(folded);
+        ids.remove(id);
+        if (!ids.isEmpty()) return;
+        idsByKey.remove(folded);
+        if (!added.remove(folded)) removedKeys++;
+    }
+
+    /**
+     * Folds the overlay into the sorted array and drops the removed names, both inputs are sorted so it is one pass
+     */
+    private void merge() {
+        String[] merged = new String[idsByKey.size()];
+        int count = 0;
+        int position = 0;
+        for (String key : added) {
+            while (position < keys.length && keys[position].compareTo(key) < 0) {
+                if (idsByKey.containsKey(keys[position])) merged[count++] = keys[position];
+                position++;
+            }
+            merged[count++] = key;
+        }
+        for (; position < keys.length; position++) {
+            if (idsByKey.containsKey(keys[position])) merged[count++] = keys[position];
+        }
+        keys = merged;
+        added.clear();
+        removedKeys = 0;
+    }
+
+    /**
+     * Every key in [from, to) starts with the same {@code depth} chars, whose Levenshtein row is {@code search.rows[depth]}
+     */
+    private void walk(Search search, int from, int to, int depth) {
+        int[] row = search.rows.get(depth);
+        if (keys[from].length() == depth) {
+            offer(search, keys[from], row[search.query.length]);
+            from++;
+        }
+        while (from < to) {
+            char c = keys[from].charAt(depth);
+            int end = endOfGroup(from, to, depth, c);
+            if (search.advance(depth, c) <= search.radius) walk(search, from, end, depth + 1);
+            from = end;
+        }
+    }
+
+    /**
+     * First position in (from, to) whose char at {@code depth} is past {@code c}, keys there are all longer than depth
+     */
+    private int endOfGroup(int from, int to, int depth, char c) {
+        int low = from + 1;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].charAt(depth) <= c) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void offer(Search search, String key, int distance) {
+        if (distance > search.radius) return;
+        SortedIntSet ids = idsByKey.get(key);
+        // removed since the last merge
+        if (ids == null) return;
+        for (int id : ids.toArray()) {
+            search.best.add(new FuzzyMatch(id, namesById.get(id), distance));
+            if (search.best.size() > search.limit) search.best.poll();
+        }
+        // once full, only names at most as far as the worst kept one can still get in
+        if (search.best.size() == search.limit) search.radius = Math.min(search.radius, search.best.peek().getDistance());
+    }
+
+    /**
+     * Two-row Levenshtein restricted to the diagonal band of width {@code max}, cells outside it can only be larger
+     */
+    private static int distance(String key, char[] query, int max, int[][] rows) {
+        int n = key.length();
+        int m = query.length;
+        if (Math.abs(n - m) > max) return max + 1;
+        int capped = max + 1;
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, capped);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            current[from - 1] = from == 1 ? Math.min(i, capped) : capped;
+            int rowMin = current[from - 1];
+            char c = key.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int value = previous[j - 1] + (c == query[j - 1] ? 0 : 1);
+                value = Math.min(value, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(value, capped);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) current[to + 1] = capped;
+            if (rowMin > max) return capped;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    private static final class Search {
+        private final char[] query;
+        private final int limit;
+        private int radius;
+        private final PriorityQueue<FuzzyMatch> best;
+        /**
+         * Row i is the Levenshtein row of the current prefix of length i against the query
+         */
+        private final List<int[]> rows = new ArrayList<>();
+
+        private Search(char[] query, int maxDistance, int limit) {
+            this.query = query;
+            this.limit = limit;
+            this.radius = maxDistance;
+            this.best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+            int[] first = new int[query.length + 1];
+            for (int j = 0; j <= query.length; j++) {
+                first[j] = j;
+            }
+            rows.add(first);
+        }
+
+        /**
+         * Fills the row of the prefix of length {@code depth + 1} ending in {@code c}
+         * @return the smallest cell, no longer name starting with that prefix can be closer
+         */
+        private int advance(int depth, char c) {
+            if (rows.size() == depth + 1) rows.add(new int[query.length + 1]);
+            int[] previous = rows.get(depth);
+            int[] next = rows.get(depth + 1);
+            next[0] = depth + 1;
+            int rowMin = next[0];
+            for (int j = 1; j <= query.length; j++) {
+                int value = previous[j - 1] + (c == query[j - 1] ? 0 : 1);
+                next[j] = Math.min(value, Math.min(previous[j], next[j - 1]) + 1);
+                rowMin = Math.min(rowMin, next[j]);
+            }
+            return rowMin;
+        }
+    }
+}
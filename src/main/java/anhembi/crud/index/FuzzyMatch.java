@@ -0,0 +1,13 @@
+package anhembi.crud.index;
+
+import lombok.Value;
+
+@Value
+public class FuzzyMatch {
+    int id;
+    String name;
+    /**
+     * Edits (insertions, deletions, substitutions) between the folded name and the folded term
+     */
+    int distance;
+}
@@ -0,0 +1,263 @@
+package anhembi.crud.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Type-ahead over names: folded names sorted in one packed char array, so the names starting with a prefix are one
+ * contiguous range found by binary search. A max segment tree over the ranks picks the best {@code limit} entries of
+ * that range in O(limit log n) however many names share the prefix.
+ * Writes go to a small sorted overlay (and a set of hidden ids) which is merged into the arrays once it grows.
+ */
+public class PrefixIndex {
+    private static final Comparator<Suggestion> BY_RANK = Comparator.comparingInt(Suggestion::getRank).reversed()
+            .thenComparing(suggestion -> Collation.fold(suggestion.getName()))
+            .thenComparingInt(Suggestion::getId);
+    private static final int MIN_OVERLAY_BEFORE_COMPACTION = 1_024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    private Snapshot snapshot = new Snapshot(List.of());
+    private final TreeMap<String, Suggestion> overlay = new TreeMap<>();
+    private final Map<Integer, String> overlayKeys = new HashMap<>();
+    private final Set<Integer> hidden = new HashSet<>();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return snapshot.ids.length - hidden.size() + overlay.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param ranksById ranks of the names, ids without one rank 0
+     */
+    public void rebuild(Map<Integer, String> namesById, Map<Integer, Integer> ranksById) {
+        List<Suggestion> entries = new ArrayList<>(namesById.size());
+        namesById.forEach((id, name) -> entries.add(new Suggestion(id, name, ranksById.getOrDefault(id, 0))));
+        Snapshot built = new Snapshot(entries);
+        lock.writeLock().lock();
+        try {
+            snapshot = built;
+            overlay.clear();
+            overlayKeys.clear();
+            hidden.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int id, String name, int rank) {
+        if (!ready) return;
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+            String key = keyOf(Collation.fold(name), id);
+            overlay.put(key, new Suggestion(id, name, rank));
+            overlayKeys.put(id, key);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return up to {@code limit} names starting with the prefix, highest rank first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive, got " + limit);
+        String folded = Collation.fold(prefix);
+        lock.readLock().lock();
+        try {
+            List<Suggestion> suggestions = snapshot.top(folded, limit, hidden);
+            suggestions.addAll(overlay.subMap(folded, true, folded + Character.MAX_VALUE, true).values());
+            suggestions.sort(BY_RANK);
+            return suggestions.size() > limit ? new ArrayList<>(suggestions.subList(0, limit)) : suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static String keyOf(String folded, int id) {
+        return folded + '\u0000' + id;
+    }
+
+    private void removeExisting(int id) {
+        String key = overlayKeys.remove(id);
+        if (key != null) overlay.remove(key);
+        if (snapshot.contains(id)) hidden.add(id);
+    }
+
+    private void compactIfNeeded() {
+        if (overlay.size() + hidden.size() < Math.max(MIN_OVERLAY_BEFORE_COMPACTION, snapshot.ids.length / 16)) return;
+        List<Suggestion> entries = new ArrayList<>(snapshot.ids.length + overlay.size());
+        for (int i = 0; i < snapshot.ids.length; i++) {
+            if (!hidden.contains(snapshot.ids[i])) entries.add(snapshot.entry(i));
+        }
+        entries.addAll(overlay.values());
+        snapshot = new Snapshot(entries);
+        overlay.clear();
+        overlayKeys.clear();
+        hidden.clear();
+    }
+
+    /**
+     * Immutable sorted arrays, entry i is the i-th folded name in order
+     */
+    private static final class Snapshot {
+        private final char[] chars;
+        private final int[] offsets;
+        private final int[] ids;
+        private final int[] ranks;
+        private final String[] names;
+        private final int[] sortedIds;
+        private final int leaves;
+        private final int[] tree;
+
+        private Snapshot(List<Suggestion> entries) {
+            int size = entries.size();
+            String[] folded = new String[size];
+            Integer[] order = new Integer[size];
+            int totalChars = 0;
+            for (int i = 0; i < size; i++) {
+                folded[i] = Collation.fold(entries.get(i).getName());
+                order[i] = i;
+                totalChars += folded[i].length();
+            }
+            Arrays.sort(order, Comparator.<Integer, String>comparing(i -> folded[i]).thenComparingInt(i -> entries.get(i).getId()));
+
+            chars = new char[totalChars];
+            offsets = new int[size + 1];
+            ids = new int[size];
+            ranks = new int[size];
+            names = new String[size];
+            for (int position = 0; position < size; position++) {
+                int i = order[position];
+                String key = folded[i];
+                key.getChars(0, key.length(), chars, offsets[position]);
+                offsets[position + 1] = offsets[position] + key.length();
+                ids[position] = entries.get(i).getId();
+                ranks[position] = entries.get(i).getRank();
+                names[position] = entries.get(i).getName();
+            }
+            sortedIds = ids.clone();
+            Arrays.sort(sortedIds);
+
+            leaves = Math.max(1, Integer.highestOneBit(Math.max(1, size) * 2 - 1));
+            tree = new int[leaves * 2];
+            Arrays.fill(tree, -1);
+            for (int position = 0; position < size; position++) {
+                tree[leaves + position] = position;
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                tree[node] = better(tree[node * 2], tree[node * 2 + 1]);
+            }
+        }
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(sortedIds, id) >= 0;
+        }
+
+        private Suggestion entry(int position) {
+            return new Suggestion(ids[position], names[position], ranks[position]);
+        }
+
+        private List<Suggestion> top(String prefix, int limit, Set<Integer> hidden) {
+            List<Suggestion> top = new ArrayList<>(limit);
+            int from = firstNotBelow(prefix, false);
+            int to = firstNotBelow(prefix, true);
+            if (from >= to) return top;
+            // each queued range is {best position, from, to}, the best of all ranges comes out first
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> a[0] == better(a[0], b[0]) ? -1 : 1);
+            ranges.add(new int[]{best(from, to), from, to});
+            while (!ranges.isEmpty() && top.size() < limit) {
+                int[] range = ranges.poll();
+                int position = range[0];
+                if (!hidden.contains(ids[position])) top.add(entry(position));
+                if (range[1] < position) ranges.add(new int[]{best(range[1], position), range[1], position});
+                if (position + 1 < range[2]) ranges.add(new int[]{best(position + 1, range[2]), position + 1, range[2]});
+            }
+            return top;
+        }
+
+        /**
+         * First position whose key is not below the prefix, or with {@code past} not starting with it either
+         */
+        private int firstNotBelow(String prefix, boolean past) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compareToPrefix(middle, prefix);
+                if (comparison < 0 || (past && comparison == 0)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return negative when the key sorts before every key starting with the prefix, 0 when it starts with it
+         */
+        private int compareToPrefix(int position, String prefix) {
+            int start = offsets[position];
+            int length = offsets[position + 1] - start;
+            int common = Math.min(length, prefix.length());
+            for (int i = 0; i < common; i++) {
+                int difference = chars[start + i] - prefix.charAt(i);
+                if (difference != 0) return difference;
+            }
+            return length < prefix.length() ? -1 : 0;
+        }
+
+        /**
+         * Position of the highest rank in [from, to), the first one on ties so equal ranks come out alphabetically
+         */
+        private int best(int from, int to) {
+            int result = -1;
+            for (int low = from + leaves, high = to + leaves; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) result = better(result, tree[low++]);
+                if ((high & 1) == 1) result = better(result, tree[--high]);
+            }
+            return result;
+        }
+
+        private int better(int a, int b) {
+            if (a < 0) return b;
+            if (b < 0) return a;
+            if (ranks[a] != ranks[b]) return ranks[a] > ranks[b] ? a : b;
+            return Math.min(a, b);
+        }
+    }
+}
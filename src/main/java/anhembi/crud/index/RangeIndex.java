@@ -0,0 +1,206 @@
+package anhembi.crud.index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ordered index on an int column, e.g. episodes: one sorted long array of (value, id) pairs, value in the high half,
+ * so a value range is one binary search away and the largest values are at the end. Writes shift the array in
+ * place (a memmove, well under a millisecond at 1M rows), bulk writes go through {@link #putAll(Map)} which merges
+ * them in one pass. Writes before the first {@link #rebuild(Map)} are ignored, the rebuild reads them from the table.
+ * The value of each id is kept in an int array indexed by the (dense, auto-increment) id so updates and deletes find
+ * the old entry.
+ */
+public class RangeIndex {
+    private static final int ABSENT = Integer.MIN_VALUE;
+
+    private long[] entries = new long[0];
+    private int size;
+    private int[] valueById = new int[0];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuild(Map<Integer, Integer> valuesById) {
+        lock.writeLock().lock();
+        try {
+            int largest = valuesById.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            valueById = new int[Math.max(0, largest) + 1];
+            Arrays.fill(valueById, ABSENT);
+            entries = new long[valuesById.size()];
+            size = 0;
+            valuesById.forEach((id, value) -> {
+                if (id <= 0 || value == ABSENT) return;
+                valueById[id] = value;
+                entries[size++] = entry(value, id);
+            });
+            Arrays.sort(entries, 0, size);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int id, int value) {
+        if (!ready || id <= 0 || value == ABSENT) return;
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+            ensureId(id);
+            valueById[id] = value;
+            long entry = entry(value, id);
+            int position = -Arrays.binarySearch(entries, 0, size, entry) - 1;
+            if (size == entries.length) entries = Arrays.copyOf(entries, Math.max(16, size + (size >> 1)));
+            System.arraycopy(entries, position, entries, position + 1, size - position);
+            entries[position] = entry;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #put(int, int)} for every pair, sorting the new entries and merging them with the existing ones
+     * in one pass instead of shifting the array once per entry
+     */
+    public void putAll(Map<Integer, Integer> valuesById) {
+        if (!ready || valuesById.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            long[] added = new long[valuesById.size()];
+            long[] replaced = new long[valuesById.size()];
+            int addedCount = 0;
+            int replacedCount = 0;
+            for (Map.Entry<Integer, Integer> pair : valuesById.entrySet()) {
+                int id = pair.getKey();
+                int value = pair.getValue();
+                if (id <= 0 || value == ABSENT) continue;
+                ensureId(id);
+                if (valueById[id] != ABSENT) replaced[replacedCount++] = entry(valueById[id], id);
+                valueById[id] = value;
+                added[addedCount++] = entry(value, id);
+            }
+            Arrays.sort(added, 0, addedCount);
+            Arrays.sort(replaced, 0, replacedCount);
+            long[] merged = new long[Math.max(16, size - replacedCount + addedCount)];
+            int count = 0;
+            int a = 0;
+            int r = 0;
+            for (int i = 0; i < size; i++) {
+                long entry = entries[i];
+                if (r < replacedCount && replaced[r] == entry) {
+                    r++;
+                    continue;
+                }
+                while (a < addedCount && added[a] < entry) {
+                    merged[count++] = added[a++];
+                }
+                merged[count++] = entry;
+            }
+            while (a < addedCount) {
+                merged[count++] = added[a++];
+            }
+            entries = merged;
+            size = count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids with a value in [min, max] by value then id, or null when the index is not loaded and SQL must be used
+     */
+    public int[] range(int min, int max) {
+        if (!ready) return null;
+        if (min > max) return new int[0];
+        lock.readLock().lock();
+        try {
+            int from = lowerBound(min);
+            int to = max == Integer.MAX_VALUE ? size : lowerBound(max + 1);
+            int[] ids = new int[to - from];
+            for (int i = from; i < to; i++) {
+                ids[i - from] = (int) entries[i];
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of the {@code n} largest values, largest first and ids ascending on ties, or null when not loaded
+     */
+    public int[] top(int n) {
+        if (n < 1) throw new IllegalArgumentException("N must be positive, got " + n);
+        if (!ready) return null;
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[Math.min(n, size)];
+            int count = 0;
+            int end = size;
+            while (count < ids.length) {
+                // entries of one value sit together sorted by id, take them from the start of the group
+                int from = lowerBound((int) (entries[end - 1] >> 32));
+                for (int i = from; i < end && count < ids.length; i++) {
+                    ids[count++] = (int) entries[i];
+                }
+                end = from;
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private static long entry(int value, int id) {
+        return (long) value << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    private void ensureId(int id) {
+        if (id < valueById.length) return;
+        int oldLength = valueById.length;
+        valueById = Arrays.copyOf(valueById, Math.max(id + 1, oldLength + (oldLength >> 1)));
+        Arrays.fill(valueById, oldLength, valueById.length, ABSENT);
+    }
+
+    private void removeExisting(int id) {
+        if (id <= 0 || id >= valueById.length || valueById[id] == ABSENT) return;
+        int position = Arrays.binarySearch(entries, 0, size, entry(valueById[id], id));
+        valueById[id] = ABSENT;
+        System.arraycopy(entries, position + 1, entries, position, size - position - 1);
+        size--;
+    }
+
+    /**
+     * First position whose value is not below {@code value}
+     */
+    private int lowerBound(int value) {
+        int position = Arrays.binarySearch(entries, 0, size, entry(value, 0));
+        return position >= 0 ? position : -position - 1;
+    }
+}
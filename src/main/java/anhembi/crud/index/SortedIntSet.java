@@ -0,0 +1,81 @@
+package anhembi.crud.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable sorted array of distinct ints, used for posting lists and id sets without boxing
+ */
+final class SortedIntSet {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values = EMPTY;
+    private int size;
+
+    boolean add(int value) {
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if (position >= 0) return false;
+        int insertAt = -position - 1;
+        if (size == values.length) values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    boolean remove(int value) {
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if (position < 0) return false;
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    void trimToSize() {
+        if (values.length != size) values = Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Keeps only the values of {@code candidates} (sorted) that are also in this set
+     */
+    int[] retainIn(int[] candidates) {
+        int[] kept = new int[Math.min(candidates.length, size)];
+        int count = 0;
+        // few candidates against a long posting list: probing beats walking the whole list
+        if ((long) candidates.length * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+            for (int candidate : candidates) {
+                if (contains(candidate)) kept[count++] = candidate;
+            }
+            return count == kept.length ? kept : Arrays.copyOf(kept, count);
+        }
+        int i = 0;
+        int j = 0;
+        while (i < candidates.length && j < size) {
+            if (candidates[i] < values[j]) {
+                i++;
+            } else if (candidates[i] > values[j]) {
+                j++;
+            } else {
+                kept[count++] = candidates[i];
+                i++;
+                j++;
+            }
+        }
+        return count == kept.length ? kept : Arrays.copyOf(kept, count);
+    }
+}
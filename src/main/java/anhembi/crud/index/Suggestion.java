@@ -0,0 +1,13 @@
+package anhembi.crud.index;
+
+import lombok.Value;
+
+@Value
+public class Suggestion {
+    int id;
+    String name;
+    /**
+     * Higher ranks are suggested first, e.g. the number of episodes of an anime
+     */
+    int rank;
+}
@@ -0,0 +1,134 @@
+package anhembi.crud.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index from name trigrams to ids, answers {@code name LIKE '%term%'} without a table scan.
+ * Posting lists are sorted int arrays, candidates from the posting intersection are verified against the folded
+ * name so results match LIKE exactly.
+ */
+public class TrigramIndex {
+    private final Map<Long, SortedIntSet> postings = new HashMap<>();
+    private final Map<Integer, String> foldedNames = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return foldedNames.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuild(Map<Integer, String> namesById) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            foldedNames.clear();
+            namesById.forEach(this::add);
+            postings.values().forEach(SortedIntSet::trimToSize);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int id, String name) {
+        if (!ready) return;
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+            add(id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeExisting(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return sorted ids whose name contains the term, or null when the index can not answer and SQL must be used
+     */
+    public int[] search(String term) {
+        if (!ready || Collation.hasLikeWildcards(term)) return null;
+        String folded = Collation.fold(term);
+        lock.readLock().lock();
+        try {
+            return folded.length() < 3 ? scan(folded) : intersect(folded);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void add(int id, String name) {
+        String folded = Collation.fold(name);
+        foldedNames.put(id, folded);
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            postings.computeIfAbsent(trigram(folded, i), key -> new SortedIntSet()).add(id);
+        }
+    }
+
+    private void removeExisting(int id) {
+        String folded = foldedNames.remove(id);
+        if (folded == null) return;
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            long key = trigram(folded, i);
+            SortedIntSet posting = postings.get(key);
+            if (posting != null && posting.remove(id) && posting.isEmpty()) postings.remove(key);
+        }
+    }
+
+    private int[] intersect(String folded) {
+        SortedIntSet smallest = null;
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            SortedIntSet posting = postings.get(trigram(folded, i));
+            if (posting == null) return new int[0];
+            if (smallest == null || posting.size() < smallest.size()) smallest = posting;
+        }
+        int[] candidates = smallest.toArray();
+        for (int i = 0; i + 3 <= folded.length() && candidates.length > 0; i++) {
+            SortedIntSet posting = postings.get(trigram(folded, i));
+            if (posting != smallest) candidates = posting.retainIn(candidates);
+        }
+        // every trigram matching does not mean they are adjacent, check the actual substring
+        int count = 0;
+        for (int candidate : candidates) {
+            if (foldedNames.get(candidate).contains(folded)) candidates[count++] = candidate;
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private int[] scan(String folded) {
+        int[] matches = new int[foldedNames.size()];
+        int count = 0;
+        for (Map.Entry<Integer, String> entry : foldedNames.entrySet()) {
+            if (entry.getValue().contains(folded)) matches[count++] = entry.getKey();
+        }
+        int[] sorted = Arrays.copyOf(matches, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long trigram(String folded, int offset) {
+        return ((long) folded.charAt(offset) << 32) | ((long) folded.charAt(offset + 1) << 16) | folded.charAt(offset + 2);
+    }
+}
@@ -1,37 +1,73 @@
 package anhembi.crud.main;
 
+import anhembi.crud.conn.PoolConfig;
+import anhembi.crud.conn.PooledConnectionFactory;
+import anhembi.crud.importer.CsvImporter;
+import anhembi.crud.importer.ImportConfig;
+import anhembi.crud.importer.ImportReport;
+import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.ProducerRepository;
 import anhembi.crud.service.AnimeService;
 import anhembi.crud.service.ProducerService;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class MainCrud {
 
 
-    public static void main(String[] args) {
+    /**
+     * Without arguments runs the interactive menu, {@code import <file>} bulk loads a name,episodes,producer CSV
+     * (or .tsv) file and exits
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("import")) {
+            importFile(Path.of(args[1]));
+            return;
+        }
         final Scanner SCANNER = new Scanner(System.in);
-        ProducerService producerService = new ProducerService();
-        AnimeService animeService = new AnimeService();
+        PooledConnectionFactory connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build());
+        ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
+        AnimeRepository animeRepository = new AnimeRepository(connectionFactory, producerRepository.getCatalog());
+        ProducerService producerService = new ProducerService(producerRepository);
+        AnimeService animeService = new AnimeService(animeRepository);
         int op;
 
-        while (true) {
-            menu();
-            op = Integer.parseInt(SCANNER.nextLine());
-            if (op == 0) break;
-            switch (op) {
-                case 1 -> {
-                    producerMenu();
-                    op = Integer.parseInt(SCANNER.nextLine());
-                    producerService.menu(op);
-                }
-                case 2 -> {
-                    animeMenu();
-                    op = Integer.parseInt(SCANNER.nextLine());
-                    animeService.menu(op);
+        try (connectionFactory) {
+            producerRepository.warmUp();
+            animeRepository.warmUp();
+            while (true) {
+                menu();
+                op = Integer.parseInt(SCANNER.nextLine());
+                if (op == 0) break;
+                switch (op) {
+                    case 1 -> {
+                        producerMenu();
+                        op = Integer.parseInt(SCANNER.nextLine());
+                        producerService.menu(op);
+                    }
+                    case 2 -> {
+                        animeMenu();
+                        op = Integer.parseInt(SCANNER.nextLine());
+                        animeService.menu(op);
+                    }
                 }
-            }
 
 
+            }
+        }
+    }
+
+    private static void importFile(Path file) throws IOException {
+        try (PooledConnectionFactory connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build())) {
+            ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
+            AnimeRepository animeRepository = new AnimeRepository(connectionFactory, producerRepository.getCatalog());
+            CsvImporter importer = new CsvImporter(connectionFactory, producerRepository, animeRepository, ImportConfig.builder().build());
+            ImportReport report = importer.importFile(file);
+            System.out.printf("Imported %d animes, rejected %d (see %s.rejects), created %d producers in %d ms, %.0f rows/s%n",
+                    report.getImported(), report.getRejected(), file, report.getProducersCreated(),
+                    report.getElapsedMillis(), report.getRowsPerSecond());
         }
     }
 
@@ -0,0 +1,113 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.index.Collation;
+import lombok.Builder;
+import lombok.Value;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.StringJoiner;
+
+/**
+ * Filters for {@link AnimeRepository#findAll(AnimeCriteria)}, unset (null) filters are left out of the query, e.g.
+ * {@code AnimeCriteria.builder().name("naru").nameMatch(NameMatch.PREFIX).minEpisodes(12).sort(Sort.EPISODES_DESC).limit(10).build()}
+ */
+@Value
+@Builder(toBuilder = true)
+public class AnimeCriteria {
+    Integer id;
+    String name;
+    @Builder.Default
+    NameMatch nameMatch = NameMatch.CONTAINS;
+    Integer minEpisodes;
+    Integer maxEpisodes;
+    Integer producerId;
+    @Builder.Default
+    Sort sort = Sort.ID;
+    Integer limit;
+
+    public enum NameMatch {
+        /**
+         * {@code name LIKE 'term%'}, can use an index on the name
+         */
+        PREFIX,
+        /**
+         * {@code name LIKE '%term%'}, has to look at every name the other filters leave
+         */
+        CONTAINS
+    }
+
+    public enum Sort {
+        ID("a.id"),
+        NAME("a.name, a.id"),
+        EPISODES("a.episodes, a.id"),
+        EPISODES_DESC("a.episodes desc, a.id");
+
+        private final String orderBy;
+
+        Sort(String orderBy) {
+            this.orderBy = orderBy;
+        }
+    }
+
+    /**
+     * Which filters are set plus the name match and sort, criteria of the same shape share one SQL string
+     */
+    int shape() {
+        int shape = 0;
+        if (id != null) shape |= 1;
+        if (name != null) shape |= 1 << 1;
+        if (minEpisodes != null) shape |= 1 << 2;
+        if (maxEpisodes != null) shape |= 1 << 3;
+        if (producerId != null) shape |= 1 << 4;
+        if (limit != null) shape |= 1 << 5;
+        return shape | nameMatch.ordinal() << 8 | sort.ordinal() << 12;
+    }
+
+    /**
+     * Columns are compared bare (no functions, casts or leading wildcards on indexed filters) so MySQL can range scan
+     */
+    String toSql(String selectAnimes) {
+        StringBuilder sql = new StringBuilder(selectAnimes).append(whereClause()).append("order by ").append(sort.orderBy);
+        if (limit != null) sql.append("\nlimit ?");
+        return sql.append(';').toString();
+    }
+
+    /**
+     * The filters only, on the columns of the anime table aliased {@code a}, empty without filters
+     */
+    String whereClause() {
+        StringJoiner where = new StringJoiner(" and ", "where ", "\n").setEmptyValue("");
+        if (id != null) where.add("a.id = ?");
+        if (name != null) where.add("a.name like ?");
+        if (minEpisodes != null) where.add("a.episodes >= ?");
+        if (maxEpisodes != null) where.add("a.episodes <= ?");
+        if (producerId != null) where.add("a.producer_id = ?");
+        return where.toString();
+    }
+
+    /**
+     * Binds the parameters in the order {@link #toSql(String)} placed them
+     */
+    void bind(PreparedStatement ps) throws SQLException {
+        int index = bindFilters(ps);
+        if (limit != null) ps.setInt(index, limit);
+    }
+
+    /**
+     * Binds the parameters of {@link #whereClause()}
+     * @return the index of the next parameter
+     */
+    int bindFilters(PreparedStatement ps) throws SQLException {
+        int index = 1;
+        if (id != null) ps.setInt(index++, id);
+        if (name != null) {
+            String escaped = Collation.escapeLike(name);
+            ps.setString(index++, nameMatch == NameMatch.PREFIX ? escaped + "%" : "%" + escaped + "%");
+        }
+        if (minEpisodes != null) ps.setInt(index++, minEpisodes);
+        if (maxEpisodes != null) ps.setInt(index++, maxEpisodes);
+        if (producerId != null) ps.setInt(index++, producerId);
+        return index;
+    }
+}
@@ -1,139 +1,970 @@
 package anhembi.crud.repository;
 
 
+import anhembi.crud.cache.CacheStats;
+import anhembi.crud.cache.IdBitmap;
+import anhembi.crud.cache.IntCache;
+import anhembi.crud.cache.NegativeCacheStats;
+import anhembi.crud.cache.QueryCache;
+import anhembi.crud.cache.SingleFlight;
+import anhembi.crud.cache.SingleFlightStats;
 import anhembi.crud.conn.ConnectionFactory;
+import anhembi.crud.conn.UnitOfWork;
 import anhembi.crud.domain.Anime;
 import anhembi.crud.domain.Producer;
+import anhembi.crud.index.Collation;
+import anhembi.crud.index.ForeignKeyIndex;
+import anhembi.crud.index.FuzzyIndex;
+import anhembi.crud.index.FuzzyMatch;
+import anhembi.crud.index.PrefixIndex;
+import anhembi.crud.index.RangeIndex;
+import anhembi.crud.index.Suggestion;
+import anhembi.crud.index.TrigramIndex;
 
 
 import lombok.extern.log4j.Log4j2;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Log4j2
 public class AnimeRepository {
 
 
+    private static final int ID_CACHE_SIZE = 10_000;
+    private static final Duration ID_CACHE_TTL = Duration.ofMinutes(5);
+    private static final int NAME_RESULTS_MAX_ROWS = 100_000;
+    private static final Duration NAME_RESULTS_TTL = Duration.ofMinutes(5);
+
     ConnectionFactory connection = new ConnectionFactory();
+    final TrigramIndex nameIndex = new TrigramIndex();
+    final PrefixIndex prefixIndex = new PrefixIndex();
+    final FuzzyIndex fuzzyIndex = new FuzzyIndex();
+    final ForeignKeyIndex producerIndex = new ForeignKeyIndex();
+    final RangeIndex episodeIndex = new RangeIndex();
+    final IntCache<Anime> idCache = new IntCache<>(ID_CACHE_SIZE, ID_CACHE_TTL);
+    final SingleFlight<String, List<Anime>> nameSearches = new SingleFlight<>();
+    final IdBitmap knownIds = new IdBitmap();
+    final QueryCache nameResults = new QueryCache(NAME_RESULTS_MAX_ROWS, NAME_RESULTS_TTL);
+    final ProducerCatalog producerCatalog;
+    final Map<Integer, String> criteriaSql = new ConcurrentHashMap<>();
+    volatile WriteBehindBuffer<Anime> writeBehind;
 
     public AnimeRepository(ConnectionFactory connectionFactory) {
+        this(connectionFactory, null);
+    }
+
+    /**
+     * Pass {@link ProducerRepository#getCatalog()} to drop the producer join once the catalog is loaded
+     */
+    public AnimeRepository(ConnectionFactory connectionFactory, ProducerCatalog producerCatalog) {
         this.connection = connectionFactory;
+        this.producerCatalog = producerCatalog != null ? producerCatalog : new ProducerCatalog(connectionFactory);
+    }
+
+    /**
+     * Loads the in-memory name, prefix, fuzzy, producer and episode indexes and the known id bitmap from the table, until then searches go to SQL
+     */
+    public void warmUp() {
+        log.info("Loading anime name index");
+        String sql = "SELECT id, name, episodes, producer_id FROM anime_store.anime order by id;";
+        Map<Integer, String> names = new LinkedHashMap<>();
+        Map<Integer, Integer> episodes = new HashMap<>();
+        Map<Integer, Integer> producers = new HashMap<>();
+        try {
+            Cursors.forEachRow(connection, sql, rs -> {
+                int id = rs.getInt("id");
+                names.put(id, rs.getString("name"));
+                episodes.put(id, rs.getInt("episodes"));
+                producers.put(id, rs.getInt("producer_id"));
+            });
+        } catch (SQLException e) {
+            log.error("Error while trying to load anime name index", e);
+            return;
+        }
+        nameIndex.rebuild(names);
+        fuzzyIndex.rebuild(names);
+        prefixIndex.rebuild(names, episodes);
+        producerIndex.rebuild(producers);
+        episodeIndex.rebuild(episodes);
+        knownIds.load(names.keySet());
+        log.info("Loaded {} anime names into the name index", names.size());
+    }
+
+    /**
+     * Concurrent calls for the same name share one query and get the same unmodifiable list
+     */
+    public List<Anime> findByName(String name) {
+        // a unit of work reads its own uncommitted rows from SQL, so it neither joins nor leads shared searches
+        if (!mayCache()) return List.copyOf(searchByName(name));
+        return nameSearches.execute(name, () -> List.copyOf(searchByName(name)));
+    }
+
+    public SingleFlightStats getNameSearchStats() {
+        return nameSearches.getStats();
+    }
+
+    public CacheStats getNameResultStats() {
+        return nameResults.getStats();
     }
 
-    public  List<Anime> findByName(String name) {
+    private List<Anime> searchByName(String name) {
         log.info("Finding Anime by name '{}'", name);
-        String sql = """
-                SELECT a.id, a.name, a.episodes, a.producer_id, p.name as 'producer_name'  FROM anime_store.anime a inner join
-                anime_store.producer p on a.producer_id = p.id
+        int[] cachedIds = mayCache() ? nameResults.get(name) : null;
+        if (cachedIds != null) return new ArrayList<>(findAllByIds(cachedIds, null, false).getFound().values());
+        long loadToken = nameResults.loadToken();
+        int[] ids = name.isEmpty() || !mayCache() ? null : nameIndex.search(name);
+        if (ids != null) {
+            nameResults.putIfNotInvalidated(name, ids, loadToken);
+            return findByIds(ids);
+        }
+        String sql = selectAnimes() + """
                 where a.name like ?;
                 """;
         List<Anime> animes = new ArrayList<>();
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, "%" + name + "%");
-            ResultSet rs = ps.executeQuery();
-
-            while (rs.next()) {
-                Producer producer = Producer.builder().name(rs.getString("producer_name")).id(rs.getInt("producer_id")).build();
-                Anime anime = Anime
-                        .builder()
-                        .id(rs.getInt("id"))
-                        .name(rs.getString("name"))
-                        .episodes(rs.getInt("episodes"))
-                        .producer(producer)
-                        .build();
-                animes.add(anime);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    animes.add(toAnime(rs));
+                }
             }
         } catch (SQLException e) {
             log.error("Error while trying to find all animes", e);
+            return animes;
         }
+        animes = withProducers(animes);
+        if (mayCache()) nameResults.putIfNotInvalidated(name, animes.stream().mapToInt(Anime::getId).sorted().toArray(), loadToken);
         return animes;
     }
 
+    /**
+     * Sorted ids of the animes whose name contains the term, without reading the rows. From the name result cache or
+     * the name index when they can answer, otherwise one id-only query
+     */
+    public int[] findIdsByName(String name) {
+        log.info("Finding anime ids by name '{}'", name);
+        int[] ids = indexedIdsByName(name);
+        if (ids != null) return ids.clone();
+        String sql = "SELECT id FROM anime_store.anime where name like ? order by id;";
+        IntStream.Builder found = IntStream.builder();
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, "%" + name + "%");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to find anime ids by name", e);
+            return new int[0];
+        }
+        return found.build().toArray();
+    }
+
+    public long countByName(String name) {
+        log.info("Counting animes by name '{}'", name);
+        int[] ids = indexedIdsByName(name);
+        if (ids != null) return ids.length;
+        String sql = "SELECT count(*) FROM anime_store.anime where name like ?;";
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, "%" + name + "%");
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to count animes by name", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Sorted ids of the animes whose name contains the term from the name result cache or the name index, null when only
+     * SQL can answer. The array may be shared, callers must not modify it
+     */
+    private int[] indexedIdsByName(String name) {
+        if (!mayCache()) return null;
+        int[] cachedIds = nameResults.get(name);
+        if (cachedIds != null) return cachedIds;
+        return name.isEmpty() ? null : nameIndex.search(name);
+    }
+
+    /**
+     * Id and name only, for listings: no producer join and one small object per row
+     */
+    public List<AnimeSummary> findSummariesByName(String name) {
+        log.info("Finding anime summaries by name '{}'", name);
+        String sql = "SELECT id, name FROM anime_store.anime where name like ? order by id;";
+        List<AnimeSummary> summaries = new ArrayList<>();
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, "%" + name + "%");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    summaries.add(new AnimeSummary(rs.getInt(1), rs.getString(2)));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to find anime summaries by name", e);
+        }
+        return summaries;
+    }
+
+    /**
+     * Type-ahead on names, most episodes first. Answered from the prefix index once warmUp loaded it, from SQL before
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive, got " + limit);
+        if (prefixIndex.isReady() && mayCache()) return prefixIndex.suggest(prefix, limit);
+        log.info("Suggesting animes starting with '{}'", prefix);
+        String sql = "SELECT id, name, episodes FROM anime_store.anime where name like ? order by episodes desc, name limit ?;";
+        List<Suggestion> suggestions = new ArrayList<>(limit);
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, Collation.escapeLike(prefix) + "%");
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    suggestions.add(new Suggestion(rs.getInt("id"), rs.getString("name"), rs.getInt("episodes")));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to suggest animes", e);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Names within {@code maxDistance} edits of the term, closest first, e.g. "Narutto" finds "Naruto" at distance 1.
+     * Answered from the fuzzy index once warmUp loaded it, before that by comparing every name read from the table
+     */
+    public List<FuzzyMatch> findByNameFuzzy(String name, int maxDistance, int limit) {
+        if (fuzzyIndex.isReady() && mayCache()) return fuzzyIndex.search(name, maxDistance, limit);
+        if (maxDistance < 0) throw new IllegalArgumentException("Max distance can not be negative, got " + maxDistance);
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive, got " + limit);
+        log.info("Finding animes within {} edits of '{}' without the fuzzy index", maxDistance, name);
+        String sql = "select id, name FROM anime_store.anime;";
+        List<FuzzyMatch> matches = new ArrayList<>();
+        try {
+            Cursors.forEachRow(connection, sql, rs -> {
+                String candidate = rs.getString("name");
+                int distance = FuzzyIndex.distance(candidate, name, maxDistance);
+                if (distance <= maxDistance) matches.add(new FuzzyMatch(rs.getInt("id"), candidate, distance));
+            });
+        } catch (SQLException e) {
+            log.error("Error while trying to find animes by similar name", e);
+            return List.of();
+        }
+        matches.sort(Comparator.comparingInt(FuzzyMatch::getDistance)
+                .thenComparing(match -> Collation.fold(match.getName()))
+                .thenComparingInt(FuzzyMatch::getId));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Seeks past the last id of the previous page instead of using OFFSET, so every page costs the same. Once the name
+     * index is warm the page is cut from its ids and only those rows are read
+     */
+    public Page<Anime> findByName(String name, int pageSize, String pageToken) {
+        log.info("Finding page of Anime by name '{}' after token '{}'", name, pageToken);
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+        int[] ids = indexedIdsByName(name);
+        if (ids != null) return Page.ofSortedIds(ids, pageToken, pageSize, pageIds -> findAllByIds(pageIds, null, false).getFound().values());
+        String sql = selectAnimes() + """
+                where a.name like ? and a.id > ?
+                order by a.id
+                limit ?;
+                """;
+        List<Anime> animes = new ArrayList<>(pageSize + 1);
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, "%" + name + "%");
+            ps.setInt(2, Page.idAfter(pageToken));
+            ps.setInt(3, pageSize + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    animes.add(toAnime(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to find page of animes", e);
+            return new Page<>(List.of(), null);
+        }
+        animes = withProducers(animes);
+        if (animes.size() <= pageSize) return new Page<>(animes, null);
+        animes.remove(pageSize);
+        return new Page<>(animes, Page.tokenAfter(animes.get(pageSize - 1).getId()));
+    }
+
+    /**
+     * Animes matching every filter set in the criteria. The SQL is generated once per criteria shape and reused
+     */
+    public List<Anime> findAll(AnimeCriteria criteria) {
+        log.info("Finding animes by '{}'", criteria);
+        if (criteria.getLimit() != null && criteria.getLimit() < 1) {
+            throw new IllegalArgumentException("Limit must be positive, got " + criteria.getLimit());
+        }
+        boolean withoutJoin = producerCatalog.isReady();
+        String sql = criteriaSql.computeIfAbsent(criteria.shape() | (withoutJoin ? 1 << 16 : 0),
+                shape -> criteria.toSql(selectAnimes(withoutJoin)));
+        List<Anime> animes = new ArrayList<>();
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            criteria.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    animes.add(toAnime(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to find animes by criteria", e);
+        }
+        return withProducers(animes);
+    }
+
+    /**
+     * Animes of the producer in id order, the ids come from the producer index once warmUp loaded it
+     */
+    public List<Anime> findByProducerId(int producerId) {
+        log.info("Finding animes by producer '{}'", producerId);
+        int[] ids = mayCache() ? producerIndex.childrenOf(producerId) : null;
+        if (ids == null) return findAll(AnimeCriteria.builder().producerId(producerId).build());
+        return new ArrayList<>(findAllByIds(ids, null, false).getFound().values());
+    }
+
+    /**
+     * @return number of animes by producer id, producers without animes are left out
+     */
+    public Map<Integer, Integer> countByProducer() {
+        Map<Integer, Integer> counts = mayCache() ? producerIndex.counts() : null;
+        if (counts != null) return counts;
+        log.info("Counting animes by producer");
+        String sql = "SELECT producer_id, count(*) as animes FROM anime_store.anime group by producer_id;";
+        Map<Integer, Integer> loaded = new TreeMap<>();
+        try {
+            Cursors.forEachRow(connection, sql, rs -> loaded.put(rs.getInt("producer_id"), rs.getInt("animes")));
+        } catch (SQLException e) {
+            log.error("Error while trying to count animes by producer", e);
+        }
+        return loaded;
+    }
+
+    /**
+     * Animes with {@code min} to {@code max} episodes (both included), fewest first, from the episode index once warm
+     */
+    public List<Anime> findByEpisodes(int min, int max) {
+        log.info("Finding animes with {} to {} episodes", min, max);
+        int[] ids = mayCache() ? episodeIndex.range(min, max) : null;
+        if (ids == null) {
+            return findAll(AnimeCriteria.builder().minEpisodes(min).maxEpisodes(max).sort(AnimeCriteria.Sort.EPISODES).build());
+        }
+        return findInOrder(ids);
+    }
+
+    /**
+     * The {@code n} animes with the most episodes, longest first
+     */
+    public List<Anime> findLongest(int n) {
+        log.info("Finding the {} longest animes", n);
+        int[] ids = mayCache() ? episodeIndex.top(n) : null;
+        if (ids == null) return findAll(AnimeCriteria.builder().sort(AnimeCriteria.Sort.EPISODES_DESC).limit(n).build());
+        return findInOrder(ids);
+    }
+
+    /**
+     * Count and episode totals per producer of the animes matching the criteria (sort and limit are ignored),
+     * computed by MySQL with one GROUP BY instead of loading the animes
+     */
+    public List<ProducerStats> statsByProducer(AnimeCriteria criteria) {
+        log.info("Computing producer stats of animes matching '{}'", criteria);
+        String sql = """
+                SELECT a.producer_id, p.name as 'producer_name', count(*) as animes, sum(a.episodes) as total_episodes,
+                avg(a.episodes) as average_episodes, max(a.episodes) as max_episodes FROM anime_store.anime a inner join
+                anime_store.producer p on a.producer_id = p.id
+                """ + criteria.whereClause() + """
+                group by a.producer_id, p.name
+                order by a.producer_id;
+                """;
+        List<ProducerStats> stats = new ArrayList<>();
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            criteria.bindFilters(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stats.add(toProducerStats(rs, rs.getInt("producer_id"), rs.getString("producer_name")));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to compute producer stats", e);
+        }
+        return stats;
+    }
+
+    /**
+     * Count and episode totals of all the animes matching the criteria, with a null producer
+     */
+    public ProducerStats stats(AnimeCriteria criteria) {
+        log.info("Computing stats of animes matching '{}'", criteria);
+        String sql = """
+                SELECT count(*) as animes, sum(a.episodes) as total_episodes, avg(a.episodes) as average_episodes,
+                max(a.episodes) as max_episodes FROM anime_store.anime a
+                """ + criteria.whereClause() + ";";
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            criteria.bindFilters(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return toProducerStats(rs, null, null);
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to compute anime stats", e);
+        }
+        return ProducerStats.builder().build();
+    }
+
+    /**
+     * Rows are read lazily from a forward-only cursor, close the stream (try-with-resources) to release the connection.
+     * The cursor keeps the producer join, no other statement can run while it is open. Once the name index is warm the
+     * rows are read one IN list of its ids at a time instead
+     */
+    public Stream<Anime> streamByName(String name) {
+        log.info("Streaming Anime by name '{}'", name);
+        int[] ids = indexedIdsByName(name);
+        if (ids != null) return streamByIds(ids);
+        String sql = selectAnimes(false) + """
+                where a.name like ?;
+                """;
+        return Cursors.stream(connection, sql, ps -> ps.setString(1, "%" + name + "%"), rs -> toAnime(rs, false));
+    }
+
+    private Stream<Anime> streamByIds(int[] sortedIds) {
+        int chunkSize = InLists.DEFAULT_CHUNK_SIZE;
+        return IntStream.range(0, (sortedIds.length + chunkSize - 1) / chunkSize)
+                .mapToObj(chunk -> Arrays.copyOfRange(sortedIds, chunk * chunkSize, Math.min(sortedIds.length, (chunk + 1) * chunkSize)))
+                .flatMap(ids -> findAllByIds(ids, null, false).getFound().values().stream());
+    }
+
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
     public  void delete(int id) {
         String sql = "DELETE FROM `anime_store`.`anime` WHERE (`id` = ?);";
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
             ps.execute();
+            afterDelete(id);
             log.info("Deleted anime '{}' from the database,", id);
         } catch (SQLException e) {
             log.error("Error while trying to delete anime '{}'", id, e);
         }
     }
 
+    public int deleteAll(Collection<Integer> ids) {
+        return deleteAll(ids, InLists.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Deletes with one {@code IN} list per chunk, each chunk its own transaction
+     * @return rows deleted
+     */
+    public int deleteAll(Collection<Integer> ids, int chunkSize) {
+        log.info("Deleting {} animes in chunks of {}", ids.size(), chunkSize);
+        String sql = "DELETE FROM `anime_store`.`anime` WHERE `id` in (%s);";
+        return InLists.executeUpdate(connection, sql, InLists.sortedDistinct(ids), chunkSize, this::afterDelete);
+    }
+
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
 
 
 
-    public void save(Anime Anime) {
+    public Optional<Anime> save(Anime Anime) {
         log.info("Saving Anime '{}'", Anime);
         String sql = "INSERT INTO `anime_store`.`anime`  (`name`,`episodes`,`producer_id`) VALUES (?, ?, ?);";
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, Anime.getName());
             ps.setInt(2, Anime.getEpisodes());
             ps.setInt(3, Anime.getProducer().getId());
             ps.execute();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) return Optional.empty();
+                Anime saved = Anime.toBuilder().id(keys.getInt(1)).build();
+                afterSave(saved);
+                return Optional.of(saved);
+            }
         } catch (SQLException e) {
             log.error("Error while trying to update anime '{}'", Anime.getId(), e);
         }
+        return Optional.empty();
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public BatchResult<Anime> saveAll(Collection<Anime> animes) {
+        return saveAll(animes, Batches.DEFAULT_CHUNK_SIZE);
+    }
+
+    public BatchResult<Anime> saveAll(Collection<Anime> animes, int chunkSize) {
+        log.info("Saving {} animes in chunks of {}", animes.size(), chunkSize);
+        BatchResult<Anime> result = insertAll(animes, chunkSize);
+        afterSaveAll(result.getItems().stream().filter(BatchResult.Item::isSuccess).map(BatchResult.Item::getEntity).toList());
+        return result;
+    }
+
+    /**
+     * Same as {@link #saveAll(Collection, int)} without updating the in-memory indexes and caches row by row, for bulk
+     * loads that call {@link #finishImport()} once at the end
+     */
+    public BatchResult<Anime> importAll(Collection<Anime> animes, int chunkSize) {
+        log.info("Importing {} animes in chunks of {}", animes.size(), chunkSize);
+        return insertAll(animes, chunkSize);
+    }
+
+    /**
+     * Drops the cached name results and reloads the indexes if they were warm, so imported rows show up in searches
+     */
+    public void finishImport() {
+        nameResults.invalidateAll();
+        if (nameIndex.isReady()) warmUp();
+    }
+
+    private BatchResult<Anime> insertAll(Collection<Anime> animes, int chunkSize) {
+        String sql = "INSERT INTO `anime_store`.`anime`  (`name`,`episodes`,`producer_id`) VALUES (?, ?, ?);";
+        return Batches.execute(connection, sql, animes, chunkSize, (ps, anime) -> {
+            ps.setString(1, anime.getName());
+            ps.setInt(2, anime.getEpisodes());
+            ps.setInt(3, anime.getProducer().getId());
+        }, (anime, id) -> anime.toBuilder().id(id).build());
     }
 
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
-    public  Optional<Anime> findById(Integer id) {
+    /**
+     * Sees name and episode updates still waiting in the write-behind buffer
+     */
+    public Optional<Anime> findById(Integer id) {
+        WriteBehindBuffer<Anime> buffer = writeBehind;
+        Anime buffered = buffer == null ? null : buffer.get(id);
+        if (buffered == null) return loadById(id);
+        return loadById(id).map(stored -> stored.toBuilder().name(buffered.getName()).episodes(buffered.getEpisodes()).build());
+    }
+
+    private Optional<Anime> loadById(Integer id) {
         log.info("Finding animes by id '{}'", id);
+        Anime cached = mayCache() ? idCache.get(id) : null;
+        if (cached != null) return Optional.of(withCurrentProducer(cached));
+        if (mayCache() && !knownIds.mightExist(id)) return Optional.empty();
+        long loadToken = idCache.loadToken(id);
+        long missToken = knownIds.missToken();
 
-        String sql = """
-                SELECT a.id, a.name, a.episodes, a.producer_id, p.name as 'producer_name'  FROM anime_store.anime a inner join
-                anime_store.producer p on a.producer_id = p.id
-                where a.id like ?
+        String sql = selectAnimes() + """
+                where a.id = ?
                 """;
 
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        Anime anime;
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (!rs.next()) return Optional.empty();
-
-            Producer producer = Producer.builder().name(rs.getString("producer_name")).id(rs.getInt("producer_id")).build();
-            Anime anime = Anime
-                    .builder()
-                    .id(rs.getInt("id"))
-                    .name(rs.getString("name"))
-                    .episodes(rs.getInt("episodes"))
-                    .producer(producer)
-                    .build();
-            return Optional.of(anime);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    if (mayCache()) knownIds.confirmMissing(id, missToken);
+                    return Optional.empty();
+                }
+                anime = toAnime(rs);
+            }
         } catch (SQLException e) {
             log.error("Error while trying to find all animes", e);
+            return Optional.empty();
         }
-        return Optional.empty();
+        anime = withProducers(List.of(anime)).get(0);
+        if (mayCache()) idCache.putIfNotInvalidated(id, anime, loadToken);
+        return Optional.of(anime);
     }
 
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
+    /**
+     * Only buffered while write-behind is enabled, unless called inside a unit of work. Then a buffered update of the
+     * same id is flushed first, so it can't overwrite this one later
+     */
     public  void update(Anime Anime) {
+        WriteBehindBuffer<Anime> buffer = writeBehind;
+        if (buffer != null) {
+            if (!UnitOfWork.isActive(connection)) {
+                buffer.put(Anime);
+                return;
+            }
+            buffer.flush(List.of(Anime.getId()));
+        }
         log.info("Updating Anime '{}'", Anime);
         String sql = "UPDATE `anime_store`.`anime` SET `name` = ?, `episodes` = ? WHERE (`id` = ?);";
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, Anime.getName());
             ps.setInt(2, Anime.getEpisodes());
             ps.setInt(3, Anime.getId());
-            ps.execute();
+            // an id matching no row must not reach the in-memory indexes
+            if (ps.executeUpdate() > 0) afterUpdate(Anime);
         } catch (SQLException e) {
             log.error("Error while trying to update Anime '{}'", Anime.getId(), e);
         }
     }
 
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public BatchResult<Anime> updateAll(Collection<Anime> animes) {
+        return updateAll(animes, Batches.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Updates as JDBC batches, one transaction per chunk. Items whose id matched no row succeed with 0 affected rows
+     */
+    public BatchResult<Anime> updateAll(Collection<Anime> animes, int chunkSize) {
+        WriteBehindBuffer<Anime> buffer = writeBehind;
+        if (buffer != null) buffer.flush(animes.stream().map(Anime::getId).toList());
+        return writeUpdates(animes, chunkSize);
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Turns {@link #update(Anime)} into a buffered write that keeps the last update per id and flushes them with
+     * batched updates on size or time, see {@link WriteBehindBuffer}
+     */
+    public void enableWriteBehind(WriteBehindConfig config) {
+        synchronized (this) {
+            if (writeBehind != null) throw new IllegalStateException("Write-behind is already enabled");
+            writeBehind = new WriteBehindBuffer<>(this::writeUpdates, Anime::getId, config);
+        }
+    }
+
+    /**
+     * Flushes what is still buffered and goes back to synchronous updates, call it before shutting down
+     */
+    public void disableWriteBehind() {
+        WriteBehindBuffer<Anime> buffer;
+        synchronized (this) {
+            buffer = writeBehind;
+            writeBehind = null;
+        }
+        if (buffer != null) buffer.close();
+    }
+
+    public Optional<WriteBehindStats> getWriteBehindStats() {
+        WriteBehindBuffer<Anime> buffer = writeBehind;
+        return buffer == null ? Optional.empty() : Optional.of(buffer.getStats());
+    }
+
+    /**
+     * Buffered updates the database kept rejecting, see {@link WriteBehindConfig#getMaxAttempts()}
+     */
+    public List<Anime> drainWriteBehindDeadLetters() {
+        WriteBehindBuffer<Anime> buffer = writeBehind;
+        return buffer == null ? List.of() : buffer.drainDeadLetters();
+    }
+
+    private BatchResult<Anime> writeUpdates(Collection<Anime> animes, int chunkSize) {
+        log.info("Updating {} animes in chunks of {}", animes.size(), chunkSize);
+        String sql = "UPDATE `anime_store`.`anime` SET `name` = ?, `episodes` = ? WHERE (`id` = ?);";
+        BatchResult<Anime> result = Batches.execute(connection, sql, animes, chunkSize, (ps, anime) -> {
+            ps.setString(1, anime.getName());
+            ps.setInt(2, anime.getEpisodes());
+            ps.setInt(3, anime.getId());
+        }, null);
+        result.getItems().stream().filter(item -> item.getAffectedRows() > 0).forEach(item -> afterUpdate(item.getEntity()));
+        return result;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public UpsertResult upsertAll(Collection<Anime> animes) {
+        return upsertAll(animes, Batches.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Inserts or updates by id with {@code INSERT ... ON DUPLICATE KEY UPDATE}, one transaction per chunk.
+     * Every anime needs an id, rows that already hold the same values are counted as unchanged and not written
+     */
+    public UpsertResult upsertAll(Collection<Anime> animes, int chunkSize) {
+        log.info("Upserting {} animes in chunks of {}", animes.size(), chunkSize);
+        WriteBehindBuffer<Anime> buffer = writeBehind;
+        // a buffered update flushed after the upsert would overwrite it
+        if (buffer != null) buffer.flush(animes.stream().map(Anime::getId).filter(Objects::nonNull).toList());
+        Upserts.Statements<Anime> statements = Upserts.Statements.<Anime>builder()
+                .selectTemplate("SELECT `id`, `name`, `episodes`, `producer_id` FROM `anime_store`.`anime` WHERE `id` in (%s) FOR UPDATE;")
+                .upsertSql("""
+                        INSERT INTO `anime_store`.`anime` (`id`,`name`,`episodes`,`producer_id`) VALUES (?, ?, ?, ?)
+                        ON DUPLICATE KEY UPDATE `name` = VALUES(`name`), `episodes` = VALUES(`episodes`), `producer_id` = VALUES(`producer_id`);""")
+                .idOf(Anime::getId)
+                .currentRow(rs -> Anime.builder().id(rs.getInt("id")).name(rs.getString("name")).episodes(rs.getInt("episodes"))
+                        .producer(Producer.builder().id(rs.getInt("producer_id")).build()).build())
+                .sameValues((anime, stored) -> anime.getName().equals(stored.getName())
+                        && anime.getEpisodes() == stored.getEpisodes()
+                        && anime.getProducer().getId().equals(stored.getProducer().getId()))
+                .binder((ps, anime) -> {
+                    ps.setInt(1, anime.getId());
+                    ps.setString(2, anime.getName());
+                    ps.setInt(3, anime.getEpisodes());
+                    ps.setInt(4, anime.getProducer().getId());
+                })
+                .build();
+        UpsertResult result = Upserts.execute(connection, statements, animes, chunkSize, this::afterSave, anime -> {
+            afterUpdate(anime);
+            UnitOfWork.afterCommit(connection, () -> producerIndex.put(anime.getId(), anime.getProducer().getId()));
+        });
+        log.info("Upserted animes: {} inserted, {} updated, {} unchanged, {} failed",
+                result.getInserted(), result.getUpdated(), result.getUnchanged(), result.getFailed());
+        return result;
+    }
+
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Ids whose query failed end up in {@link MultiGetResult#getUnresolved()}, not in the missing ones
+     */
+    public MultiGetResult<Anime> findAllByIds(Collection<Integer> ids) {
+        return findAllByIds(InLists.sortedDistinct(ids), null, false);
+    }
+
+    /**
+     * Same as {@link #findAllByIds(Collection)} with each IN list read on {@code executor} over its own connection
+     */
+    public MultiGetResult<Anime> findAllByIds(Collection<Integer> ids, ExecutorService executor) {
+        return findAllByIds(InLists.sortedDistinct(ids), Objects.requireNonNull(executor), true);
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public CacheStats getIdCacheStats() {
+        return idCache.getStats();
+    }
+
+    public NegativeCacheStats getMissingIdStats() {
+        return knownIds.getStats();
+    }
 
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
+    private List<Anime> findByIds(int[] ids) {
+        String sql = selectAnimes() + """
+                where a.id in (%s);
+                """;
+        try {
+            return withProducers(InLists.fetch(connection, sql, ids, InLists.DEFAULT_CHUNK_SIZE, this::toAnime));
+        } catch (SQLException e) {
+            log.error("Error while trying to find animes by ids", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Resolves ids through the multi-get and keeps them in the given order, ids deleted meanwhile are skipped
+     */
+    private List<Anime> findInOrder(int[] ids) {
+        int[] sortedIds = ids.clone();
+        Arrays.sort(sortedIds);
+        MultiGetResult<Anime> result = findAllByIds(sortedIds, null, false);
+        List<Anime> animes = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Anime anime = result.getFound().get(id);
+            if (anime != null) animes.add(anime);
+        }
+        return animes;
+    }
+
+    /**
+     * Ids found in the id cache are not queried again, the rest is read in IN lists sequentially or on the executor
+     */
+    private MultiGetResult<Anime> findAllByIds(int[] sortedIds, ExecutorService executor, boolean parallel) {
+        log.info("Finding {} animes by id", sortedIds.length);
+        Map<Integer, Anime> rows = new HashMap<>(sortedIds.length * 2);
+        int[] toLoad = new int[sortedIds.length];
+        long[] loadTokens = new long[sortedIds.length];
+        int misses = 0;
+        boolean shared = mayCache();
+        for (int id : sortedIds) {
+            Anime cached = shared ? idCache.get(id) : null;
+            if (cached != null) {
+                rows.put(id, withCurrentProducer(cached));
+            } else if (!shared || knownIds.mightExist(id)) {
+                loadTokens[misses] = idCache.loadToken(id);
+                toLoad[misses++] = id;
+            }
+        }
+        int[] idsToLoad = Arrays.copyOf(toLoad, misses);
+        long missToken = knownIds.missToken();
+        String sql = selectAnimes() + """
+                where a.id in (%s);
+                """;
+        try {
+            List<Anime> loaded = withProducers(parallel
+                    ? InLists.fetch(connection, sql, idsToLoad, InLists.DEFAULT_CHUNK_SIZE, this::toAnime, executor)
+                    : InLists.fetch(connection, sql, idsToLoad, InLists.DEFAULT_CHUNK_SIZE, this::toAnime));
+            for (Anime anime : loaded) {
+                if (shared) idCache.putIfNotInvalidated(anime.getId(), anime, loadTokens[Arrays.binarySearch(idsToLoad, anime.getId())]);
+                rows.put(anime.getId(), anime);
+            }
+            for (int id : idsToLoad) {
+                if (!rows.containsKey(id) && shared) knownIds.confirmMissing(id, missToken);
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to find animes by ids", e);
+            // the ids left unloaded are not known to be missing
+            return MultiGetResult.of(sortedIds, rows, Arrays.stream(idsToLoad).boxed().collect(Collectors.toSet()));
+        }
+        return MultiGetResult.of(sortedIds, rows);
+    }
+
+    /**
+     * The caches and indexes only learn of a unit of work's writes once it commits, and rows it reads may still be
+     * rolled back, so inside a unit they are neither read nor filled
+     */
+    private boolean mayCache() {
+        return !UnitOfWork.isActive(connection);
+    }
 
+    private void afterSave(Anime anime) {
+        afterSaveAll(List.of(anime));
+    }
+
+    /**
+     * The episode index takes the whole batch at once, one put per row would shift its array once per row
+     */
+    private void afterSaveAll(List<Anime> animes) {
+        if (animes.isEmpty()) return;
+        UnitOfWork.afterCommit(connection, () -> {
+            Map<Integer, Integer> episodes = new HashMap<>(animes.size() * 2);
+            for (Anime anime : animes) {
+                episodes.put(anime.getId(), anime.getEpisodes());
+                producerIndex.put(anime.getId(), anime.getProducer().getId());
+                fuzzyIndex.put(anime.getId(), anime.getName());
+                prefixIndex.put(anime.getId(), anime.getName(), anime.getEpisodes());
+                knownIds.add(anime.getId());
+                nameResults.invalidate(anime.getId(), anime.getName());
+                nameIndex.put(anime.getId(), anime.getName());
+            }
+            episodeIndex.putAll(episodes);
+        });
+    }
+
+    private void afterUpdate(Anime anime) {
+        UnitOfWork.afterCommit(connection, () -> {
+            episodeIndex.put(anime.getId(), anime.getEpisodes());
+            fuzzyIndex.put(anime.getId(), anime.getName());
+            prefixIndex.put(anime.getId(), anime.getName(), anime.getEpisodes());
+            nameResults.invalidate(anime.getId(), anime.getName());
+            idCache.invalidate(anime.getId());
+            nameIndex.put(anime.getId(), anime.getName());
+        });
+    }
+
+    private void afterDelete(int id) {
+        WriteBehindBuffer<Anime> buffer = writeBehind;
+        if (buffer != null) buffer.discard(id);
+        UnitOfWork.afterCommit(connection, () -> {
+            episodeIndex.remove(id);
+            producerIndex.remove(id);
+            fuzzyIndex.remove(id);
+            prefixIndex.remove(id);
+            knownIds.remove(id);
+            nameResults.invalidate(id, null);
+            idCache.invalidate(id);
+            nameIndex.remove(id);
+        });
+    }
+
+    /**
+     * Once the producer catalog is loaded, producers are filled in from memory and the join is skipped
+     */
+    private String selectAnimes() {
+        return selectAnimes(producerCatalog.isReady());
+    }
+
+    private String selectAnimes(boolean withoutJoin) {
+        if (withoutJoin) return "SELECT a.id, a.name, a.episodes, a.producer_id FROM anime_store.anime a\n";
+        return """
+                SELECT a.id, a.name, a.episodes, a.producer_id, p.name as 'producer_name'  FROM anime_store.anime a inner join
+                anime_store.producer p on a.producer_id = p.id
+                """;
+    }
+
+    private Anime withCurrentProducer(Anime anime) {
+        if (!producerCatalog.isReady()) return anime;
+        Producer producer = producerCatalog.get(anime.getProducer().getId());
+        return producer == null || producer == anime.getProducer() ? anime : anime.toBuilder().producer(producer).build();
+    }
+
+    private ProducerStats toProducerStats(ResultSet rs, Integer producerId, String producerName) throws SQLException {
+        return ProducerStats.builder()
+                .producerId(producerId)
+                .producerName(producerName)
+                .animes(rs.getLong("animes"))
+                .totalEpisodes(rs.getLong("total_episodes"))
+                .averageEpisodes(rs.getDouble("average_episodes"))
+                .maxEpisodes(rs.getInt("max_episodes"))
+                .build();
+    }
+
+    /**
+     * Producers missing from the catalog were left with only their id by {@link #toAnime(ResultSet, boolean)}, they are
+     * read with one query once the result set is closed
+     */
+    private List<Anime> withProducers(List<Anime> animes) {
+        Set<Integer> missing = animes.stream().map(Anime::getProducer).filter(producer -> producer.getName() == null)
+                .map(Producer::getId).collect(Collectors.toSet());
+        if (missing.isEmpty()) return animes;
+        Map<Integer, Producer> producers = producerCatalog.resolveAll(missing);
+        return animes.stream().map(anime -> {
+            Producer producer = anime.getProducer().getName() == null ? producers.get(anime.getProducer().getId()) : null;
+            return producer == null ? anime : anime.toBuilder().producer(producer).build();
+        }).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private Anime toAnime(ResultSet rs) throws SQLException {
+        return toAnime(rs, producerCatalog.isReady());
+    }
+
+    /**
+     * Without the join the producer comes from the catalog in memory, the row mapper never runs a query
+     */
+    private Anime toAnime(ResultSet rs, boolean withoutJoin) throws SQLException {
+        int producerId = rs.getInt("producer_id");
+        Producer producer = withoutJoin
+                ? producerCatalog.get(producerId)
+                : Producer.builder().name(rs.getString("producer_name")).id(producerId).build();
+        if (producer == null) producer = Producer.builder().id(producerId).build();
+        return Anime
+                .builder()
+                .id(rs.getInt("id"))
+                .name(rs.getString("name"))
+                .episodes(rs.getInt("episodes"))
+                .producer(producer)
+                .build();
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,12 @@
+package anhembi.crud.repository;
+
+import lombok.Value;
+
+/**
+ * Id and name of an anime, what listings show, read without the producer join
+ */
+@Value
+public class AnimeSummary {
+    int id;
+    String name;
+}
@@ -0,0 +1,167 @@
+package anhembi.crud.repository;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collects single id lookups arriving close together and answers them with one multi-get, e.g.
+ * {@code new BatchLoader<>(animeRepository::findAllByIds, BatchLoaderConfig.builder().build())}.
+ * A batch is sent when the window of its first request ends or when it reaches the max batch size.
+ */
+@Log4j2
+public class BatchLoader<T> implements AutoCloseable {
+    private final Function<Collection<Integer>, MultiGetResult<T>> loader;
+    private final BatchLoaderConfig config;
+    private final ScheduledExecutorService executor;
+
+    private final Object lock = new Object();
+    private List<Request<T>> pending = new ArrayList<>();
+    private boolean closed;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public BatchLoader(Function<Collection<Integer>, MultiGetResult<T>> loader, BatchLoaderConfig config) {
+        this.loader = loader;
+        this.config = config;
+        AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(config.getThreads(), r -> {
+            Thread thread = new Thread(r, "batch-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // close() sends the pending batch itself, window timers left at that point have nothing to do
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Optional<T>> load(int id) {
+        Request<T> request = new Request<>(id, System.nanoTime());
+        List<Request<T>> full = null;
+        synchronized (lock) {
+            if (closed) throw new IllegalStateException("Batch loader is closed");
+            pending.add(request);
+            if (pending.size() == 1) {
+                List<Request<T>> batch = pending;
+                executor.schedule(() -> dispatchIfStillPending(batch), config.getWindowMicros(), TimeUnit.MICROSECONDS);
+            }
+            if (pending.size() >= config.getMaxBatchSize()) {
+                full = pending;
+                pending = new ArrayList<>();
+            }
+        }
+        requests.increment();
+        if (full != null) {
+            List<Request<T>> batch = full;
+            executor.execute(() -> dispatch(batch));
+        }
+        return request.future;
+    }
+
+    public BatchLoaderStats getStats() {
+        long batchCount = batches.sum();
+        return BatchLoaderStats.builder()
+                .requests(requests.sum())
+                .batches(batchCount)
+                .deduplicated(deduplicated.sum())
+                .averageBatchSize(batchCount == 0 ? 0 : (double) requests.sum() / batchCount)
+                .maxBatchSize(maxBatchSize.get())
+                .averageWaitMillis(requests.sum() == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / requests.sum())
+                .maxWaitMillis(maxWaitNanos.get() / 1_000_000.0)
+                .build();
+    }
+
+    /**
+     * Sends what is still pending and waits for it before stopping the loader threads
+     */
+    @Override
+    public void close() {
+        List<Request<T>> batch;
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        if (!batch.isEmpty()) executor.execute(() -> dispatch(batch));
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void dispatchIfStillPending(List<Request<T>> batch) {
+        synchronized (lock) {
+            // already sent because it filled up, or by close
+            if (pending != batch) return;
+            pending = new ArrayList<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<Request<T>> batch) {
+        long now = System.nanoTime();
+        Map<Integer, List<Request<T>>> requestsById = new LinkedHashMap<>(batch.size() * 2);
+        for (Request<T> request : batch) {
+            requestsById.computeIfAbsent(request.id, id -> new ArrayList<>(1)).add(request);
+            long waited = now - request.enqueuedAt;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        batches.increment();
+        deduplicated.add(batch.size() - requestsById.size());
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+        log.debug("Loading batch of {} ids for {} requests", requestsById.size(), batch.size());
+        try {
+            MultiGetResult<T> result = loader.apply(requestsById.keySet());
+            requestsById.forEach((id, requests) -> {
+                if (result.getUnresolved().contains(id)) {
+                    IllegalStateException failure = new IllegalStateException("Could not load id " + id);
+                    requests.forEach(request -> request.future.completeExceptionally(failure));
+                    return;
+                }
+                Optional<T> row = result.get(id);
+                requests.forEach(request -> request.future.complete(row));
+            });
+        } catch (RuntimeException | Error e) {
+            // an incomplete future would leave its callers waiting forever
+            log.error("Error while trying to load batch of {} ids", requestsById.size(), e);
+            batch.forEach(request -> request.future.completeExceptionally(e));
+            if (e instanceof Error) throw e;
+        }
+    }
+
+    private static final class Request<T> {
+        private final int id;
+        private final long enqueuedAt;
+        private final CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+
+        private Request(int id, long enqueuedAt) {
+            this.id = id;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package anhembi.crud.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class BatchLoaderConfig {
+    /**
+     * How long the first id of a batch waits for others to join before the batch is sent
+     */
+    @Builder.Default
+    long windowMicros = 1_000;
+    /**
+     * A batch reaching this many requests is sent right away without waiting for the window
+     */
+    @Builder.Default
+    int maxBatchSize = 100;
+    @Builder.Default
+    int threads = 2;
+}
@@ -0,0 +1,19 @@
+package anhembi.crud.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class BatchLoaderStats {
+    long requests;
+    long batches;
+    /**
+     * Requests answered from another request for the same id in the same batch
+     */
+    long deduplicated;
+    double averageBatchSize;
+    int maxBatchSize;
+    double averageWaitMillis;
+    double maxWaitMillis;
+}
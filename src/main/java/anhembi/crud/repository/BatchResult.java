@@ -0,0 +1,40 @@
+package anhembi.crud.repository;
+
+import lombok.Value;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Outcome of a batch write, one {@link Item} per input in the order the inputs were given
+ */
+@Value
+public class BatchResult<T> {
+    List<Item<T>> items;
+
+    public long getSuccessCount() {
+        return items.stream().filter(Item::isSuccess).count();
+    }
+
+    /**
+     * Rows the statements reported as written, for updates the rows matched by id
+     */
+    public long getAffectedRows() {
+        return items.stream().mapToLong(Item::getAffectedRows).sum();
+    }
+
+    public List<Item<T>> getFailures() {
+        return items.stream().filter(item -> !item.isSuccess()).toList();
+    }
+
+    @Value
+    public static class Item<T> {
+        T entity;
+        boolean success;
+        SQLException error;
+        /**
+         * 0 on failure or when the statement matched no row, 1 when the driver wrote the row without reporting a count
+         */
+        int affectedRows;
+    }
+}
@@ -0,0 +1,126 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.conn.ConnectionFactory;
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JDBC batching shared by the repositories: one connection for the whole call, one transaction per chunk
+ */
+@Log4j2
+final class Batches {
+    static final int DEFAULT_CHUNK_SIZE = 1_000;
+
+    private Batches() {
+    }
+
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T entity) throws SQLException;
+    }
+
+    interface KeyAssigner<T> {
+        T withId(T entity, int id);
+    }
+
+    /**
+     * Runs the statement for every entity, when {@code keyAssigner} is given the generated keys are read back
+     * and the reported entities carry their new ids
+     */
+    static <T> BatchResult<T> execute(ConnectionFactory connectionFactory, String sql, Collection<T> entities,
+                                      int chunkSize, Binder<T> binder, KeyAssigner<T> keyAssigner) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        List<T> pending = new ArrayList<>(entities);
+        List<BatchResult.Item<T>> items = new ArrayList<>(pending.size());
+        if (pending.isEmpty()) return new BatchResult<>(items);
+
+        try (Connection conn = connectionFactory.getConnection();
+             PreparedStatement ps = keyAssigner == null
+                     ? conn.prepareStatement(sql)
+                     : conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < pending.size(); from += chunkSize) {
+                    List<T> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+                    executeChunk(conn, ps, chunk, binder, keyAssigner, items);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to execute batch of {} entities", pending.size(), e);
+            for (int i = items.size(); i < pending.size(); i++) {
+                items.add(new BatchResult.Item<>(pending.get(i), false, e, 0));
+            }
+        }
+        return new BatchResult<>(items);
+    }
+
+    private static <T> void executeChunk(Connection conn, PreparedStatement ps, List<T> chunk, Binder<T> binder,
+                                         KeyAssigner<T> keyAssigner, List<BatchResult.Item<T>> items) throws SQLException {
+        try {
+            for (T entity : chunk) {
+                binder.bind(ps, entity);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            List<T> persisted = withGeneratedKeys(ps, chunk, keyAssigner);
+            conn.commit();
+            for (int i = 0; i < persisted.size(); i++) {
+                items.add(new BatchResult.Item<>(persisted.get(i), true, null, affectedRows(counts, i)));
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            ps.clearBatch();
+            log.warn("Batch of {} entities failed, retrying them one by one to isolate the failures", chunk.size(), e);
+            for (T entity : chunk) {
+                items.add(executeSingle(conn, ps, entity, binder, keyAssigner));
+            }
+        }
+    }
+
+    private static <T> BatchResult.Item<T> executeSingle(Connection conn, PreparedStatement ps, T entity, Binder<T> binder,
+                                                         KeyAssigner<T> keyAssigner) throws SQLException {
+        try {
+            binder.bind(ps, entity);
+            int count = ps.executeUpdate();
+            T persisted = withGeneratedKeys(ps, List.of(entity), keyAssigner).get(0);
+            conn.commit();
+            return new BatchResult.Item<>(persisted, true, null, count);
+        } catch (SQLException e) {
+            conn.rollback();
+            return new BatchResult.Item<>(entity, false, e, 0);
+        }
+    }
+
+    /**
+     * Rewritten batches (rewriteBatchedStatements) may report SUCCESS_NO_INFO instead of a count
+     */
+    private static int affectedRows(int[] counts, int index) {
+        if (counts == null || index >= counts.length || counts[index] == Statement.SUCCESS_NO_INFO) return 1;
+        return Math.max(0, counts[index]);
+    }
+
+    /**
+     * The driver returns one key per inserted row in insertion order, also for rewritten multi-row inserts
+     */
+    private static <T> List<T> withGeneratedKeys(PreparedStatement ps, List<T> entities, KeyAssigner<T> keyAssigner)
+            throws SQLException {
+        if (keyAssigner == null) return entities;
+        List<T> persisted = new ArrayList<>(entities.size());
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            for (T entity : entities) {
+                if (!keys.next()) throw new SQLException("Driver returned fewer generated keys than inserted rows");
+                persisted.add(keyAssigner.withId(entity, keys.getInt(1)));
+            }
+        }
+        return persisted;
+    }
+}
@@ -0,0 +1,96 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.conn.ConnectionFactory;
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily populated streams over a MySQL server-side cursor, the connection stays borrowed until the stream is closed
+ */
+@Log4j2
+final class Cursors {
+
+    private Cursors() {
+    }
+
+    interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    interface RowCallback {
+        void accept(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Streams every row through the callback, unlike {@link #stream} failures are thrown to the caller
+     */
+    static void forEachRow(ConnectionFactory connectionFactory, String sql, RowCallback callback) throws SQLException {
+        try (Connection conn = connectionFactory.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    callback.accept(rs);
+                }
+            }
+        }
+    }
+
+    static <T> Stream<T> stream(ConnectionFactory connectionFactory, String sql, Binder binder, RowMapper<T> mapper) {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = connectionFactory.getConnection();
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Integer.MIN_VALUE makes Connector/J stream rows one by one instead of buffering the whole result
+            ps.setFetchSize(Integer.MIN_VALUE);
+            binder.bind(ps);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            log.error("Error while trying to open cursor", e);
+            closeAll(rs, ps, conn);
+            return Stream.empty();
+        }
+        ResultSet cursor = rs;
+        PreparedStatement statement = ps;
+        Connection connection = conn;
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.next()) return false;
+                    action.accept(mapper.map(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error while reading from cursor", e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> closeAll(cursor, statement, connection));
+    }
+
+    private static void closeAll(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) continue;
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Error while closing cursor resource", e);
+            }
+        }
+    }
+}
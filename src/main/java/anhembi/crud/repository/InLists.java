@@ -0,0 +1,168 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.conn.ConnectionFactory;
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Reads and writes rows by id with {@code IN (?, ?, ...)} lists of bounded size, so the statement text and the packet stay small
+ */
+@Log4j2
+final class InLists {
+    static final int DEFAULT_CHUNK_SIZE = 1_000;
+
+    private InLists() {
+    }
+
+    /**
+     * Distinct non-null ids in ascending order
+     */
+    static int[] sortedDistinct(Collection<Integer> ids) {
+        return ids.stream().filter(Objects::nonNull).mapToInt(Integer::intValue).sorted().distinct().toArray();
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Runs every chunk one after the other on a single connection
+     *
+     * @param sqlTemplate query with one {@code %s} where the placeholders go
+     */
+    static <T> List<T> fetch(ConnectionFactory connectionFactory, String sqlTemplate, int[] ids, int chunkSize,
+                             Cursors.RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>(ids.length);
+        if (ids.length == 0) return rows;
+        try (Connection conn = connectionFactory.getConnection()) {
+            for (int from = 0; from < ids.length; from += chunkSize) {
+                fetchChunk(conn, sqlTemplate, ids, from, Math.min(from + chunkSize, ids.length), mapper, rows);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Runs each chunk as its own task with its own connection, worth it when a pool can serve them side by side
+     */
+    static <T> List<T> fetch(ConnectionFactory connectionFactory, String sqlTemplate, int[] ids, int chunkSize,
+                             Cursors.RowMapper<T> mapper, ExecutorService executor) throws SQLException {
+        if (ids.length <= chunkSize) return fetch(connectionFactory, sqlTemplate, ids, chunkSize, mapper);
+        List<Future<List<T>>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += chunkSize) {
+            int start = from;
+            int end = Math.min(from + chunkSize, ids.length);
+            chunks.add(executor.submit(() -> {
+                List<T> rows = new ArrayList<>(end - start);
+                try (Connection conn = connectionFactory.getConnection()) {
+                    fetchChunk(conn, sqlTemplate, ids, start, end, mapper, rows);
+                }
+                return rows;
+            }));
+        }
+        List<T> rows = new ArrayList<>(ids.length);
+        try {
+            for (Future<List<T>> chunk : chunks) {
+                rows.addAll(chunk.get());
+            }
+        } catch (InterruptedException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for id chunks", e);
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            if (e.getCause() instanceof SQLException sqlException) throw sqlException;
+            throw new SQLException("Id chunk failed", e.getCause());
+        }
+        return rows;
+    }
+
+    /**
+     * Runs a write (e.g. a DELETE) once per chunk of ids on one connection, each chunk in its own transaction.
+     * A failing chunk is rolled back and logged and the next chunks still run
+     *
+     * @param committed called for every id of each committed chunk
+     * @return rows affected by the committed chunks
+     */
+    static int executeUpdate(ConnectionFactory connectionFactory, String sqlTemplate, int[] ids, int chunkSize,
+                             IntConsumer committed) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        if (ids.length == 0) return 0;
+        int affected = 0;
+        try (Connection conn = connectionFactory.getConnection()) {
+            conn.setAutoCommit(false);
+            // every chunk but the last has the same size and shares one statement
+            PreparedStatement full = null;
+            try {
+                for (int from = 0; from < ids.length; from += chunkSize) {
+                    int to = Math.min(from + chunkSize, ids.length);
+                    if (to - from == chunkSize && full == null) {
+                        full = conn.prepareStatement(sqlTemplate.formatted(placeholders(chunkSize)));
+                    }
+                    affected += to - from == chunkSize
+                            ? executeChunk(conn, full, ids, from, to, committed)
+                            : executeLastChunk(conn, sqlTemplate, ids, from, to, committed);
+                }
+            } finally {
+                if (full != null) full.close();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to write {} ids", ids.length, e);
+        }
+        return affected;
+    }
+
+    private static int executeLastChunk(Connection conn, String sqlTemplate, int[] ids, int from, int to,
+                                        IntConsumer committed) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sqlTemplate.formatted(placeholders(to - from)))) {
+            return executeChunk(conn, ps, ids, from, to, committed);
+        }
+    }
+
+    private static int executeChunk(Connection conn, PreparedStatement ps, int[] ids, int from, int to,
+                                    IntConsumer committed) throws SQLException {
+        try {
+            for (int i = from; i < to; i++) {
+                ps.setInt(i - from + 1, ids[i]);
+            }
+            int affected = ps.executeUpdate();
+            conn.commit();
+            for (int i = from; i < to; i++) {
+                committed.accept(ids[i]);
+            }
+            return affected;
+        } catch (SQLException e) {
+            conn.rollback();
+            log.error("Error while trying to write chunk of {} ids starting at '{}', rolled back", to - from, ids[from], e);
+            return 0;
+        }
+    }
+
+    private static <T> void fetchChunk(Connection conn, String sqlTemplate, int[] ids, int from, int to,
+                                       Cursors.RowMapper<T> mapper, List<T> rows) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sqlTemplate.formatted(placeholders(to - from)))) {
+            for (int i = from; i < to; i++) {
+                ps.setInt(i - from + 1, ids[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package anhembi.crud.repository;
+
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rows found by a multi-get keyed by id in ascending id order, plus the requested ids that have no row and the ones
+ * whose query failed, which are unresolved rather than missing
+ */
+@Value
+public class MultiGetResult<T> {
+    Map<Integer, T> found;
+    Set<Integer> missing;
+    Set<Integer> unresolved;
+
+    public Optional<T> get(int id) {
+        return Optional.ofNullable(found.get(id));
+    }
+
+    public boolean isComplete() {
+        return unresolved.isEmpty();
+    }
+
+    static <T> MultiGetResult<T> of(int[] sortedIds, Map<Integer, T> rows) {
+        return of(sortedIds, rows, Set.of());
+    }
+
+    /**
+     * @param failed ids whose query failed, only the ones without a row are reported as unresolved
+     */
+    static <T> MultiGetResult<T> of(int[] sortedIds, Map<Integer, T> rows, Set<Integer> failed) {
+        Map<Integer, T> found = new LinkedHashMap<>(rows.size() * 2);
+        Set<Integer> missing = new LinkedHashSet<>();
+        Set<Integer> unresolved = new LinkedHashSet<>();
+        for (int id : sortedIds) {
+            T row = rows.get(id);
+            if (row != null) {
+                found.put(id, row);
+            } else if (failed.contains(id)) {
+                unresolved.add(id);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new MultiGetResult<>(Collections.unmodifiableMap(found), Collections.unmodifiableSet(missing),
+                Collections.unmodifiableSet(unresolved));
+    }
+}
@@ -0,0 +1,62 @@
+package anhembi.crud.repository;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing, {@code nextPageToken} is null on the last page
+ */
+@Value
+public class Page<T> {
+    private static final String TOKEN_PREFIX = "id:";
+
+    List<T> items;
+    String nextPageToken;
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+
+    /**
+     * The page after the token out of ids already known in ascending order, e.g. from an index. Only the ids of the
+     * page are fetched, rows deleted meanwhile leave the page short
+     */
+    static <T> Page<T> ofSortedIds(int[] sortedIds, String pageToken, int pageSize, Function<int[], Collection<T>> fetch) {
+        int from = Arrays.binarySearch(sortedIds, idAfter(pageToken));
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = Math.min(sortedIds.length, from + pageSize);
+        if (from >= to) return new Page<>(List.of(), null);
+        List<T> items = new ArrayList<>(fetch.apply(Arrays.copyOfRange(sortedIds, from, to)));
+        return new Page<>(items, to < sortedIds.length ? tokenAfter(sortedIds[to - 1]) : null);
+    }
+
+    static String tokenAfter(int id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((TOKEN_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the last id of the previous page, 0 for the first page
+     */
+    static int idAfter(String pageToken) {
+        if (pageToken == null) return 0;
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token '" + pageToken + "'", e);
+        }
+        if (!decoded.startsWith(TOKEN_PREFIX)) throw new IllegalArgumentException("Invalid page token '" + pageToken + "'");
+        try {
+            return Integer.parseInt(decoded.substring(TOKEN_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page token '" + pageToken + "'", e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.conn.ConnectionFactory;
+import anhembi.crud.conn.UnitOfWork;
+import anhembi.crud.domain.Producer;
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full in-memory copy of the producer table, one shared {@link Producer} instance per id.
+ * Loaded by {@link ProducerRepository#warmUp()} and kept current by its writes; readers never lock,
+ * writes copy the map, which is fine for a small table that rarely changes.
+ */
+@Log4j2
+public class ProducerCatalog {
+    private final ConnectionFactory connection;
+    private volatile Map<Integer, Producer> producers = Map.of();
+    private volatile boolean ready;
+
+    public ProducerCatalog(ConnectionFactory connectionFactory) {
+        this.connection = connectionFactory;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return producers.size();
+    }
+
+    public synchronized void load(Map<Integer, String> namesById) {
+        Map<Integer, Producer> loaded = new HashMap<>(namesById.size() * 2);
+        namesById.forEach((id, name) -> loaded.put(id, Producer.builder().id(id).name(name).build()));
+        producers = loaded;
+        ready = true;
+    }
+
+    /**
+     * The producer held in memory, without querying
+     */
+    public Producer get(int id) {
+        return producers.get(id);
+    }
+
+    public Producer resolve(int id) {
+        return resolveAll(List.of(id)).get(id);
+    }
+
+    /**
+     * Producers written by someone else since the load are read from the table with one IN list and kept. Inside a
+     * unit of work they are returned but not kept, the rows may still be rolled back
+     *
+     * @return the producers found by id, ids that exist nowhere are left out
+     */
+    public Map<Integer, Producer> resolveAll(Collection<Integer> ids) {
+        Map<Integer, Producer> current = producers;
+        Map<Integer, Producer> resolved = new HashMap<>(ids.size() * 2);
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Producer producer = current.get(id);
+            if (producer != null) resolved.put(id, producer);
+            else missing.add(id);
+        }
+        if (missing.isEmpty() || !ready) return resolved;
+        log.info("Producers {} missing from the catalog, loading them", missing);
+        String sql = "select * FROM anime_store.producer where id in (%s);";
+        List<Producer> loaded;
+        try {
+            loaded = InLists.fetch(connection, sql, InLists.sortedDistinct(missing), InLists.DEFAULT_CHUNK_SIZE,
+                    rs -> Producer.builder().id(rs.getInt("id")).name(rs.getString("name")).build());
+        } catch (SQLException e) {
+            log.error("Error while trying to load producers {} into the catalog", missing, e);
+            return resolved;
+        }
+        boolean keep = !UnitOfWork.isActive(connection);
+        for (Producer producer : loaded) {
+            resolved.put(producer.getId(), producer);
+            if (keep) put(producer);
+        }
+        return resolved;
+    }
+
+    public synchronized void put(Producer producer) {
+        if (!ready) return;
+        Map<Integer, Producer> updated = new HashMap<>(producers);
+        updated.put(producer.getId(), producer);
+        producers = updated;
+    }
+
+    public synchronized void remove(int id) {
+        if (!ready) return;
+        Map<Integer, Producer> updated = new HashMap<>(producers);
+        updated.remove(id);
+        producers = updated;
+    }
+}
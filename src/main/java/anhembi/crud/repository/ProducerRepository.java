@@ -1,94 +1,366 @@
 package anhembi.crud.repository;
 
 
+import anhembi.crud.cache.CacheStats;
+import anhembi.crud.cache.IdBitmap;
+import anhembi.crud.cache.IntCache;
+import anhembi.crud.cache.NegativeCacheStats;
+import anhembi.crud.cache.QueryCache;
+import anhembi.crud.cache.SingleFlight;
+import anhembi.crud.cache.SingleFlightStats;
 import anhembi.crud.conn.ConnectionFactory;
+import anhembi.crud.conn.UnitOfWork;
 import anhembi.crud.domain.Producer;
+import anhembi.crud.index.Collation;
+import anhembi.crud.index.FuzzyIndex;
+import anhembi.crud.index.FuzzyMatch;
+import anhembi.crud.index.PrefixIndex;
+import anhembi.crud.index.Suggestion;
+import anhembi.crud.index.TrigramIndex;
 import lombok.extern.log4j.Log4j2;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Log4j2
 public class ProducerRepository {
+    private static final int ID_CACHE_SIZE = 10_000;
+    private static final Duration ID_CACHE_TTL = Duration.ofMinutes(5);
+    private static final int NAME_RESULTS_MAX_ROWS = 100_000;
+    private static final Duration NAME_RESULTS_TTL = Duration.ofMinutes(5);
+
     ConnectionFactory connection = new ConnectionFactory();
+    final TrigramIndex nameIndex = new TrigramIndex();
+    final PrefixIndex prefixIndex = new PrefixIndex();
+    final FuzzyIndex fuzzyIndex = new FuzzyIndex();
+    final IntCache<Producer> idCache = new IntCache<>(ID_CACHE_SIZE, ID_CACHE_TTL);
+    final SingleFlight<String, List<Producer>> nameSearches = new SingleFlight<>();
+    final IdBitmap knownIds = new IdBitmap();
+    final QueryCache nameResults = new QueryCache(NAME_RESULTS_MAX_ROWS, NAME_RESULTS_TTL);
+    final ProducerCatalog catalog;
 
     public ProducerRepository(ConnectionFactory connectionFactory) {
         this.connection = connectionFactory;
+        this.catalog = new ProducerCatalog(connectionFactory);
+    }
+
+    /**
+     * Shared with {@link AnimeRepository} so anime reads can fill in producers without the join
+     */
+    public ProducerCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Loads the in-memory name, prefix and fuzzy indexes, the known id bitmap and the producer catalog from the table, until then searches go to SQL
+     */
+    public void warmUp() {
+        log.info("Loading producer name index");
+        String sql = "select id, name FROM anime_store.producer order by id;";
+        Map<Integer, String> names = new LinkedHashMap<>();
+        try {
+            Cursors.forEachRow(connection, sql, rs -> names.put(rs.getInt("id"), rs.getString("name")));
+        } catch (SQLException e) {
+            log.error("Error while trying to load producer name index", e);
+            return;
+        }
+        nameIndex.rebuild(names);
+        fuzzyIndex.rebuild(names);
+        prefixIndex.rebuild(names, Map.of());
+        knownIds.load(names.keySet());
+        catalog.load(names);
+        log.info("Loaded {} producer names into the name index and catalog", names.size());
     }
 
-    public  List<Producer> findByName(String name) {
+    /**
+     * Concurrent calls for the same name share one query and get the same unmodifiable list
+     */
+    public List<Producer> findByName(String name) {
+        // a unit of work reads its own uncommitted rows from SQL, so it neither joins nor leads shared searches
+        if (!mayCache()) return List.copyOf(searchByName(name));
+        return nameSearches.execute(name, () -> List.copyOf(searchByName(name)));
+    }
+
+    public SingleFlightStats getNameSearchStats() {
+        return nameSearches.getStats();
+    }
+
+    public CacheStats getNameResultStats() {
+        return nameResults.getStats();
+    }
+
+    private List<Producer> searchByName(String name) {
         log.info("Finding producers by name '{}'", name);
+        int[] cachedIds = mayCache() ? nameResults.get(name) : null;
+        if (cachedIds != null) return new ArrayList<>(findAllByIds(cachedIds, null, false).getFound().values());
+        long loadToken = nameResults.loadToken();
+        int[] ids = name.isEmpty() || !mayCache() ? null : nameIndex.search(name);
+        if (ids != null) {
+            nameResults.putIfNotInvalidated(name, ids, loadToken);
+            return findByIds(ids);
+        }
         String sql = "select * FROM anime_store.producer where name like ?;";
         List<Producer> producers = new ArrayList<>();
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, "%" + name + "%");
-            ResultSet rs = ps.executeQuery();
-
-
-            while (rs.next()) {
-                Producer producer = Producer
-                        .builder()
-                        .id(rs.getInt("id"))
-                        .name(rs.getString("name"))
-                        .build();
-                producers.add(producer);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    producers.add(toProducer(rs));
+                }
             }
         } catch (SQLException e) {
             log.error("Error while trying to find all producers", e);
+            return producers;
         }
+        if (mayCache()) nameResults.putIfNotInvalidated(name, producers.stream().mapToInt(Producer::getId).sorted().toArray(), loadToken);
         return producers;
     }
 
+    /**
+     * Sorted ids of the producers whose name contains the term from the name result cache or the name index, null when only
+     * SQL can answer. The array may be shared, callers must not modify it
+     */
+    private int[] indexedIdsByName(String name) {
+        if (!mayCache()) return null;
+        int[] cachedIds = nameResults.get(name);
+        if (cachedIds != null) return cachedIds;
+        return name.isEmpty() ? null : nameIndex.search(name);
+    }
+
+    /**
+     * Type-ahead on names in alphabetical order. Answered from the prefix index once warmUp loaded it, from SQL before
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive, got " + limit);
+        if (prefixIndex.isReady() && mayCache()) return prefixIndex.suggest(prefix, limit);
+        log.info("Suggesting producers starting with '{}'", prefix);
+        String sql = "select id, name FROM anime_store.producer where name like ? order by name limit ?;";
+        List<Suggestion> suggestions = new ArrayList<>(limit);
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, Collation.escapeLike(prefix) + "%");
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    suggestions.add(new Suggestion(rs.getInt("id"), rs.getString("name"), 0));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to suggest producers", e);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Names within {@code maxDistance} edits of the term, closest first, e.g. "Narutto" finds "Naruto" at distance 1.
+     * Answered from the fuzzy index once warmUp loaded it, before that by comparing every name read from the table
+     */
+    public List<FuzzyMatch> findByNameFuzzy(String name, int maxDistance, int limit) {
+        if (fuzzyIndex.isReady() && mayCache()) return fuzzyIndex.search(name, maxDistance, limit);
+        if (maxDistance < 0) throw new IllegalArgumentException("Max distance can not be negative, got " + maxDistance);
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive, got " + limit);
+        log.info("Finding producers within {} edits of '{}' without the fuzzy index", maxDistance, name);
+        String sql = "select id, name FROM anime_store.producer;";
+        List<FuzzyMatch> matches = new ArrayList<>();
+        try {
+            Cursors.forEachRow(connection, sql, rs -> {
+                String candidate = rs.getString("name");
+                int distance = FuzzyIndex.distance(candidate, name, maxDistance);
+                if (distance <= maxDistance) matches.add(new FuzzyMatch(rs.getInt("id"), candidate, distance));
+            });
+        } catch (SQLException e) {
+            log.error("Error while trying to find producers by similar name", e);
+            return List.of();
+        }
+        matches.sort(Comparator.comparingInt(FuzzyMatch::getDistance)
+                .thenComparing(match -> Collation.fold(match.getName()))
+                .thenComparingInt(FuzzyMatch::getId));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Seeks past the last id of the previous page instead of using OFFSET, so every page costs the same. Once the name
+     * index is warm the page is cut from its ids and only those rows are read
+     */
+    public Page<Producer> findByName(String name, int pageSize, String pageToken) {
+        log.info("Finding page of producers by name '{}' after token '{}'", name, pageToken);
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+        int[] ids = indexedIdsByName(name);
+        if (ids != null) return Page.ofSortedIds(ids, pageToken, pageSize, pageIds -> findAllByIds(pageIds, null, false).getFound().values());
+        String sql = "select * FROM anime_store.producer where name like ? and id > ? order by id limit ?;";
+        List<Producer> producers = new ArrayList<>(pageSize + 1);
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, "%" + name + "%");
+            ps.setInt(2, Page.idAfter(pageToken));
+            ps.setInt(3, pageSize + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    producers.add(toProducer(rs));
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to find page of producers", e);
+            return new Page<>(List.of(), null);
+        }
+        if (producers.size() <= pageSize) return new Page<>(producers, null);
+        producers.remove(pageSize);
+        return new Page<>(producers, Page.tokenAfter(producers.get(pageSize - 1).getId()));
+    }
+
+    /**
+     * Rows are read lazily from a forward-only cursor, close the stream (try-with-resources) to release the connection.
+     * Once the name index is warm they are read one IN list of its ids at a time instead
+     */
+    public Stream<Producer> streamByName(String name) {
+        log.info("Streaming producers by name '{}'", name);
+        int[] ids = indexedIdsByName(name);
+        if (ids != null) return streamByIds(ids);
+        String sql = "select * FROM anime_store.producer where name like ?;";
+        return Cursors.stream(connection, sql, ps -> ps.setString(1, "%" + name + "%"), this::toProducer);
+    }
+
+    private Stream<Producer> streamByIds(int[] sortedIds) {
+        int chunkSize = InLists.DEFAULT_CHUNK_SIZE;
+        return IntStream.range(0, (sortedIds.length + chunkSize - 1) / chunkSize)
+                .mapToObj(chunk -> Arrays.copyOfRange(sortedIds, chunk * chunkSize, Math.min(sortedIds.length, (chunk + 1) * chunkSize)))
+                .flatMap(ids -> findAllByIds(ids, null, false).getFound().values().stream());
+    }
+
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
     public void delete(int id) {
         String sql = "DELETE FROM `anime_store`.`producer` WHERE (`id` = ?);";
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
             ps.execute();
+            afterDelete(id);
             log.info("Deleted producer '{}' from the database,", id);
         } catch (SQLException e) {
             log.error("Error while trying to delete producer '{}'", id, e);
         }
     }
 
+    public int deleteAll(Collection<Integer> ids) {
+        return deleteAll(ids, InLists.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Deletes with one {@code IN} list per chunk, each chunk its own transaction. A producer still referenced by an
+     * anime fails its whole chunk
+     * @return rows deleted
+     */
+    public int deleteAll(Collection<Integer> ids, int chunkSize) {
+        log.info("Deleting {} producers in chunks of {}", ids.size(), chunkSize);
+        String sql = "DELETE FROM `anime_store`.`producer` WHERE `id` in (%s);";
+        return InLists.executeUpdate(connection, sql, InLists.sortedDistinct(ids), chunkSize, this::afterDelete);
+    }
+
 
 
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
 
-    public  void save(Producer producer) {
+    public  Optional<Producer> save(Producer producer) {
         log.info("Saving producer '{}'", producer);
         String sql = "INSERT INTO `anime_store`.`producer`  (`name`) VALUES (?);";
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, producer.getName());
             ps.execute();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) return Optional.empty();
+                Producer saved = producer.toBuilder().id(keys.getInt(1)).build();
+                afterSave(saved);
+                return Optional.of(saved);
+            }
         } catch (SQLException e) {
             log.error("Error while trying to update producer '{}'", producer.getId(), e);
         }
+        return Optional.empty();
+    }
+
+
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public BatchResult<Producer> saveAll(Collection<Producer> producers) {
+        return saveAll(producers, Batches.DEFAULT_CHUNK_SIZE);
+    }
+
+    public BatchResult<Producer> saveAll(Collection<Producer> producers, int chunkSize) {
+        log.info("Saving {} producers in chunks of {}", producers.size(), chunkSize);
+        BatchResult<Producer> result = insertAll(producers, chunkSize);
+        result.getItems().stream().filter(BatchResult.Item::isSuccess).forEach(item -> afterSave(item.getEntity()));
+        return result;
+    }
+
+    /**
+     * Same as {@link #saveAll(Collection, int)} without updating the catalog, indexes and caches row by row, for bulk
+     * loads that call {@link #finishImport()} once at the end
+     */
+    public BatchResult<Producer> importAll(Collection<Producer> producers, int chunkSize) {
+        log.info("Importing {} producers in chunks of {}", producers.size(), chunkSize);
+        return insertAll(producers, chunkSize);
     }
 
+    /**
+     * Drops the cached name results and reloads the indexes and catalog if they were warm
+     */
+    public void finishImport() {
+        nameResults.invalidateAll();
+        if (nameIndex.isReady()) warmUp();
+    }
 
+    private BatchResult<Producer> insertAll(Collection<Producer> producers, int chunkSize) {
+        String sql = "INSERT INTO `anime_store`.`producer`  (`name`) VALUES (?);";
+        return Batches.execute(connection, sql, producers, chunkSize,
+                (ps, producer) -> ps.setString(1, producer.getName()),
+                (producer, id) -> producer.toBuilder().id(id).build());
+    }
 
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
     public  Optional<Producer> findById(Integer id) {
         log.info("Finding producers by id '{}'", id);
+        Producer cached = mayCache() ? idCache.get(id) : null;
+        if (cached != null) return Optional.of(cached);
+        if (mayCache() && !knownIds.mightExist(id)) return Optional.empty();
+        long loadToken = idCache.loadToken(id);
+        long missToken = knownIds.missToken();
         String sql = "select * FROM anime_store.producer where id = ?;";
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (!rs.next()) return Optional.empty();
-            return Optional.of(Producer
-                    .builder()
-                    .id(rs.getInt("id"))
-                    .name(rs.getString("name"))
-                    .build());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    if (mayCache()) knownIds.confirmMissing(id, missToken);
+                    return Optional.empty();
+                }
+                Producer producer = toProducer(rs);
+                if (mayCache()) idCache.putIfNotInvalidated(id, producer, loadToken);
+                return Optional.of(producer);
+            }
         } catch (SQLException e) {
             log.error("Error while trying to find all producers", e);
         }
@@ -102,10 +374,12 @@ public class ProducerRepository {
     public  void update(Producer producer) {
         log.info("Updating producer '{}'", producer);
         String sql = "UPDATE `anime_store`.`producer` SET `name` = ? WHERE (`id` = ?);";
-        try (PreparedStatement ps = connection.getConnection().prepareStatement(sql)) {
+        try (Connection conn = connection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, producer.getName());
             ps.setInt(2, producer.getId());
-            ps.execute();
+            // an id matching no row must not reach the catalog or the in-memory indexes
+            if (ps.executeUpdate() > 0) afterUpdate(producer);
         } catch (SQLException e) {
             log.error("Error while trying to update producer '{}'", producer.getId(), e);
         }
@@ -113,4 +387,180 @@ public class ProducerRepository {
 
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
 
+    public BatchResult<Producer> updateAll(Collection<Producer> producers) {
+        return updateAll(producers, Batches.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Updates as JDBC batches, one transaction per chunk. Items whose id matched no row succeed with 0 affected rows
+     */
+    public BatchResult<Producer> updateAll(Collection<Producer> producers, int chunkSize) {
+        log.info("Updating {} producers in chunks of {}", producers.size(), chunkSize);
+        String sql = "UPDATE `anime_store`.`producer` SET `name` = ? WHERE (`id` = ?);";
+        BatchResult<Producer> result = Batches.execute(connection, sql, producers, chunkSize, (ps, producer) -> {
+            ps.setString(1, producer.getName());
+            ps.setInt(2, producer.getId());
+        }, null);
+        result.getItems().stream().filter(item -> item.getAffectedRows() > 0).forEach(item -> afterUpdate(item.getEntity()));
+        return result;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public UpsertResult upsertAll(Collection<Producer> producers) {
+        return upsertAll(producers, Batches.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Inserts or updates by id with {@code INSERT ... ON DUPLICATE KEY UPDATE}, one transaction per chunk.
+     * Every producer needs an id, rows that already hold the same name are counted as unchanged and not written
+     */
+    public UpsertResult upsertAll(Collection<Producer> producers, int chunkSize) {
+        log.info("Upserting {} producers in chunks of {}", producers.size(), chunkSize);
+        Upserts.Statements<Producer> statements = Upserts.Statements.<Producer>builder()
+                .selectTemplate("SELECT `id`, `name` FROM `anime_store`.`producer` WHERE `id` in (%s) FOR UPDATE;")
+                .upsertSql("INSERT INTO `anime_store`.`producer` (`id`,`name`) VALUES (?, ?) ON DUPLICATE KEY UPDATE `name` = VALUES(`name`);")
+                .idOf(Producer::getId)
+                .currentRow(this::toProducer)
+                .sameValues((producer, stored) -> producer.getName().equals(stored.getName()))
+                .binder((ps, producer) -> {
+                    ps.setInt(1, producer.getId());
+                    ps.setString(2, producer.getName());
+                })
+                .build();
+        UpsertResult result = Upserts.execute(connection, statements, producers, chunkSize, this::afterSave, this::afterUpdate);
+        log.info("Upserted producers: {} inserted, {} updated, {} unchanged, {} failed",
+                result.getInserted(), result.getUpdated(), result.getUnchanged(), result.getFailed());
+        return result;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Ids whose query failed end up in {@link MultiGetResult#getUnresolved()}, not in the missing ones
+     */
+    public MultiGetResult<Producer> findAllByIds(Collection<Integer> ids) {
+        return findAllByIds(InLists.sortedDistinct(ids), null, false);
+    }
+
+    /**
+     * Same as {@link #findAllByIds(Collection)} with each IN list read on {@code executor} over its own connection
+     */
+    public MultiGetResult<Producer> findAllByIds(Collection<Integer> ids, ExecutorService executor) {
+        return findAllByIds(InLists.sortedDistinct(ids), Objects.requireNonNull(executor), true);
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    public CacheStats getIdCacheStats() {
+        return idCache.getStats();
+    }
+
+    public NegativeCacheStats getMissingIdStats() {
+        return knownIds.getStats();
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private List<Producer> findByIds(int[] ids) {
+        String sql = "select * FROM anime_store.producer where id in (%s);";
+        try {
+            return InLists.fetch(connection, sql, ids, InLists.DEFAULT_CHUNK_SIZE, this::toProducer);
+        } catch (SQLException e) {
+            log.error("Error while trying to find producers by ids", e);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Ids found in the id cache are not queried again, the rest is read in IN lists sequentially or on the executor
+     */
+    private MultiGetResult<Producer> findAllByIds(int[] sortedIds, ExecutorService executor, boolean parallel) {
+        log.info("Finding {} producers by id", sortedIds.length);
+        Map<Integer, Producer> rows = new HashMap<>(sortedIds.length * 2);
+        int[] toLoad = new int[sortedIds.length];
+        long[] loadTokens = new long[sortedIds.length];
+        int misses = 0;
+        boolean shared = mayCache();
+        for (int id : sortedIds) {
+            Producer cached = shared ? idCache.get(id) : null;
+            if (cached != null) {
+                rows.put(id, cached);
+            } else if (!shared || knownIds.mightExist(id)) {
+                loadTokens[misses] = idCache.loadToken(id);
+                toLoad[misses++] = id;
+            }
+        }
+        int[] idsToLoad = Arrays.copyOf(toLoad, misses);
+        long missToken = knownIds.missToken();
+        String sql = "select * FROM anime_store.producer where id in (%s);";
+        try {
+            List<Producer> loaded = parallel
+                    ? InLists.fetch(connection, sql, idsToLoad, InLists.DEFAULT_CHUNK_SIZE, this::toProducer, executor)
+                    : InLists.fetch(connection, sql, idsToLoad, InLists.DEFAULT_CHUNK_SIZE, this::toProducer);
+            for (Producer producer : loaded) {
+                if (shared) idCache.putIfNotInvalidated(producer.getId(), producer, loadTokens[Arrays.binarySearch(idsToLoad, producer.getId())]);
+                rows.put(producer.getId(), producer);
+            }
+            for (int id : idsToLoad) {
+                if (!rows.containsKey(id) && shared) knownIds.confirmMissing(id, missToken);
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to find producers by ids", e);
+            // the ids left unloaded are not known to be missing
+            return MultiGetResult.of(sortedIds, rows, Arrays.stream(idsToLoad).boxed().collect(Collectors.toSet()));
+        }
+        return MultiGetResult.of(sortedIds, rows);
+    }
+
+    /**
+     * The caches and indexes only learn of a unit of work's writes once it commits, and rows it reads may still be
+     * rolled back, so inside a unit they are neither read nor filled
+     */
+    private boolean mayCache() {
+        return !UnitOfWork.isActive(connection);
+    }
+
+    private void afterSave(Producer producer) {
+        UnitOfWork.afterCommit(connection, () -> {
+            fuzzyIndex.put(producer.getId(), producer.getName());
+            prefixIndex.put(producer.getId(), producer.getName(), 0);
+            knownIds.add(producer.getId());
+            nameResults.invalidate(producer.getId(), producer.getName());
+            nameIndex.put(producer.getId(), producer.getName());
+            catalog.put(producer);
+        });
+    }
+
+    private void afterUpdate(Producer producer) {
+        UnitOfWork.afterCommit(connection, () -> {
+            fuzzyIndex.put(producer.getId(), producer.getName());
+            prefixIndex.put(producer.getId(), producer.getName(), 0);
+            nameResults.invalidate(producer.getId(), producer.getName());
+            idCache.invalidate(producer.getId());
+            nameIndex.put(producer.getId(), producer.getName());
+            catalog.put(producer);
+        });
+    }
+
+    private void afterDelete(int id) {
+        UnitOfWork.afterCommit(connection, () -> {
+            fuzzyIndex.remove(id);
+            prefixIndex.remove(id);
+            knownIds.remove(id);
+            nameResults.invalidate(id, null);
+            idCache.invalidate(id);
+            nameIndex.remove(id);
+            catalog.remove(id);
+        });
+    }
+
+    private Producer toProducer(ResultSet rs) throws SQLException {
+        return Producer
+                .builder()
+                .id(rs.getInt("id"))
+                .name(rs.getString("name"))
+                .build();
+    }
+
 }
@@ -0,0 +1,18 @@
+package anhembi.crud.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Episode totals of the animes of one producer, or of all matching animes when {@code producerId} is null
+ */
+@Value
+@Builder
+public class ProducerStats {
+    Integer producerId;
+    String producerName;
+    long animes;
+    long totalEpisodes;
+    double averageEpisodes;
+    int maxEpisodes;
+}
@@ -0,0 +1,40 @@
+package anhembi.crud.repository;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Outcome of an upsert, one {@link Chunk} per transaction in the order they ran
+ */
+@Value
+public class UpsertResult {
+    List<Chunk> chunks;
+
+    public long getInserted() {
+        return chunks.stream().mapToLong(Chunk::getInserted).sum();
+    }
+
+    public long getUpdated() {
+        return chunks.stream().mapToLong(Chunk::getUpdated).sum();
+    }
+
+    public long getUnchanged() {
+        return chunks.stream().mapToLong(Chunk::getUnchanged).sum();
+    }
+
+    /**
+     * Rows of chunks that were rolled back
+     */
+    public long getFailed() {
+        return chunks.stream().mapToLong(Chunk::getFailed).sum();
+    }
+
+    @Value
+    public static class Chunk {
+        int inserted;
+        int updated;
+        int unchanged;
+        int failed;
+    }
+}
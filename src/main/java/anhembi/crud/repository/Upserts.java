@@ -0,0 +1,130 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.conn.ConnectionFactory;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@code INSERT ... ON DUPLICATE KEY UPDATE} in chunks, one transaction per chunk. MySQL's per-row affected rows
+ * (1 inserted, 2 updated, 0 unchanged) do not survive rewritten batches on a found-rows connection, so each chunk
+ * first locks and reads its existing rows with one {@code IN} list, which also lets unchanged rows skip the write
+ */
+@Log4j2
+final class Upserts {
+
+    private Upserts() {
+    }
+
+    @Value
+    @Builder
+    static class Statements<T> {
+        /**
+         * Query with one {@code %s} for the id placeholders, ending in {@code FOR UPDATE}
+         */
+        String selectTemplate;
+        String upsertSql;
+        Function<T, Integer> idOf;
+        Cursors.RowMapper<T> currentRow;
+        /**
+         * Whether the stored row already has every value the entity would write
+         */
+        BiPredicate<T, T> sameValues;
+        Batches.Binder<T> binder;
+    }
+
+    static <T> UpsertResult execute(ConnectionFactory connectionFactory, Statements<T> statements, Collection<T> entities,
+                                    int chunkSize, Consumer<T> afterInsert, Consumer<T> afterUpdate) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        // the last entity of an id wins, as it would in the table
+        Map<Integer, T> byId = new LinkedHashMap<>();
+        for (T entity : entities) {
+            Integer id = statements.idOf.apply(entity);
+            if (id == null) throw new IllegalArgumentException("Upserts match on id, got an entity without one: " + entity);
+            byId.put(id, entity);
+        }
+        List<T> pending = new ArrayList<>(byId.values());
+        List<UpsertResult.Chunk> chunks = new ArrayList<>();
+        if (pending.isEmpty()) return new UpsertResult(chunks);
+
+        try (Connection conn = connectionFactory.getConnection();
+             PreparedStatement upsert = conn.prepareStatement(statements.upsertSql)) {
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < pending.size(); from += chunkSize) {
+                    List<T> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+                    chunks.add(executeChunk(conn, upsert, statements, chunk, afterInsert, afterUpdate));
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.error("Error while trying to upsert {} entities", pending.size(), e);
+            int done = chunks.stream().mapToInt(c -> c.getInserted() + c.getUpdated() + c.getUnchanged() + c.getFailed()).sum();
+            if (done < pending.size()) chunks.add(new UpsertResult.Chunk(0, 0, 0, pending.size() - done));
+        }
+        return new UpsertResult(chunks);
+    }
+
+    private static <T> UpsertResult.Chunk executeChunk(Connection conn, PreparedStatement upsert, Statements<T> statements,
+                                                       List<T> chunk, Consumer<T> afterInsert, Consumer<T> afterUpdate)
+            throws SQLException {
+        try {
+            Map<Integer, T> current = readCurrent(conn, statements, chunk);
+            List<T> inserted = new ArrayList<>();
+            List<T> updated = new ArrayList<>();
+            for (T entity : chunk) {
+                T stored = current.get(statements.idOf.apply(entity));
+                if (stored == null) {
+                    inserted.add(entity);
+                } else if (!statements.sameValues.test(entity, stored)) {
+                    updated.add(entity);
+                } else {
+                    continue;
+                }
+                statements.binder.bind(upsert, entity);
+                upsert.addBatch();
+            }
+            if (!inserted.isEmpty() || !updated.isEmpty()) upsert.executeBatch();
+            conn.commit();
+            inserted.forEach(afterInsert);
+            updated.forEach(afterUpdate);
+            return new UpsertResult.Chunk(inserted.size(), updated.size(), chunk.size() - inserted.size() - updated.size(), 0);
+        } catch (SQLException e) {
+            conn.rollback();
+            upsert.clearBatch();
+            log.error("Error while trying to upsert chunk of {} entities, rolled back", chunk.size(), e);
+            return new UpsertResult.Chunk(0, 0, 0, chunk.size());
+        }
+    }
+
+    private static <T> Map<Integer, T> readCurrent(Connection conn, Statements<T> statements, List<T> chunk) throws SQLException {
+        Map<Integer, T> current = new HashMap<>(chunk.size() * 2);
+        try (PreparedStatement ps = conn.prepareStatement(statements.selectTemplate.formatted(InLists.placeholders(chunk.size())))) {
+            for (int i = 0; i < chunk.size(); i++) {
+                ps.setInt(i + 1, statements.idOf.apply(chunk.get(i)));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    T stored = statements.currentRow.map(rs);
+                    current.put(statements.idOf.apply(stored), stored);
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,244 @@
+package anhembi.crud.repository;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps the last update per id and writes them in batches, when {@link WriteBehindConfig#getMaxPending()} ids are
+ * buffered or every {@link WriteBehindConfig#getFlushIntervalMillis()}. An entry leaves the buffer only once its
+ * value is in the database and no newer one replaced it, so {@link #get(int)} always sees the latest write. A row
+ * rejected by {@link WriteBehindConfig#getMaxAttempts()} flushes in a row is dropped to {@link #drainDeadLetters()}.
+ */
+@Log4j2
+public class WriteBehindBuffer<T> implements AutoCloseable {
+    private final BiFunction<Collection<T>, Integer, BatchResult<T>> writer;
+    private final ToIntFunction<T> idOf;
+    private final WriteBehindConfig config;
+    private final Map<Integer, T> pending = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> failedAttempts = new ConcurrentHashMap<>();
+    private final Queue<T> deadLetters = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService executor;
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /**
+     * @param writer writes a collection of entities in chunks of the given size, e.g. {@code repository::updateAll}
+     */
+    public WriteBehindBuffer(BiFunction<Collection<T>, Integer, BatchResult<T>> writer, ToIntFunction<T> idOf,
+                             WriteBehindConfig config) {
+        if (config.getMaxPending() < 1 || config.getFlushIntervalMillis() < 1 || config.getMaxAttempts() < 1) {
+            throw new IllegalArgumentException("Invalid write-behind config " + config);
+        }
+        this.writer = writer;
+        this.idOf = idOf;
+        this.config = config;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = config.getFlushIntervalMillis();
+        executor.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+        if (config.isFlushOnShutdown()) {
+            shutdownHook = new Thread(this::flushQuietly, "write-behind-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            shutdownHook = null;
+        }
+    }
+
+    public void put(T entity) {
+        if (closed) throw new IllegalStateException("Write-behind buffer is closed");
+        updates.increment();
+        int id = idOf.applyAsInt(entity);
+        if (pending.put(id, entity) != null) coalesced.increment();
+        failedAttempts.remove(id);
+        int depth = pending.size();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+        if (depth >= config.getMaxPending() && flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * The buffered value not yet in the database, or null
+     */
+    public T get(int id) {
+        return pending.get(id);
+    }
+
+    /**
+     * Drops a buffered update, e.g. because its row was deleted. Waits for a flush in progress, so the dropped value
+     * can't reach the database afterwards.
+     */
+    public void discard(int id) {
+        synchronized (flushLock) {
+            pending.remove(id);
+            failedAttempts.remove(id);
+        }
+    }
+
+    /**
+     * Writes the buffered updates of these ids and waits for them, to be called before a synchronous write to the
+     * same rows. The write runs on the buffer's own thread, so it commits even when the caller is inside a unit of
+     * work that later rolls back.
+     */
+    public void flush(Collection<Integer> ids) {
+        if (ids.stream().noneMatch(pending::containsKey)) return;
+        try {
+            executor.submit(() -> flushIds(ids)).get();
+        } catch (RejectedExecutionException e) {
+            // closing, the timer thread is gone
+            flushIds(ids);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Write-behind flush failed", e.getCause());
+        }
+    }
+
+    /**
+     * Writes everything buffered so far on the calling thread
+     * @return rows written
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            if (pending.isEmpty()) return 0;
+            return write(new ArrayList<>(pending.values()));
+        }
+    }
+
+    /**
+     * Removes and returns the rows dropped after too many rejected flushes
+     */
+    public List<T> drainDeadLetters() {
+        List<T> drained = new ArrayList<>();
+        for (T entity; (entity = deadLetters.poll()) != null; ) {
+            drained.add(entity);
+        }
+        return drained;
+    }
+
+    public WriteBehindStats getStats() {
+        long flushCount = flushes.sum();
+        return WriteBehindStats.builder()
+                .updates(updates.sum())
+                .coalesced(coalesced.sum())
+                .queueDepth(pending.size())
+                .maxQueueDepth(maxQueueDepth.get())
+                .flushes(flushCount)
+                .flushedRows(flushedRows.sum())
+                .failedRows(failedRows.sum())
+                .deadLetters(deadLettered.sum())
+                .averageFlushMillis(flushCount == 0 ? 0 : flushNanos.sum() / 1_000_000.0 / flushCount)
+                .maxFlushMillis(maxFlushNanos.get() / 1_000_000.0)
+                .build();
+    }
+
+    /**
+     * Stops the timer and flushes what is left on the calling thread
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // already shutting down, the hook is running or about to
+            }
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------------------------------------------------
+
+    private void flushIds(Collection<Integer> ids) {
+        synchronized (flushLock) {
+            List<T> batch = new ArrayList<>();
+            for (int id : ids) {
+                T entity = pending.get(id);
+                if (entity != null) batch.add(entity);
+            }
+            if (!batch.isEmpty()) write(batch);
+        }
+    }
+
+    private int write(List<T> batch) {
+        long start = System.nanoTime();
+        BatchResult<T> result = writer.apply(batch, config.getChunkSize());
+        int written = 0;
+        for (BatchResult.Item<T> item : result.getItems()) {
+            T entity = item.getEntity();
+            int id = idOf.applyAsInt(entity);
+            if (item.isSuccess()) {
+                // a newer update that arrived during the flush stays buffered
+                if (pending.remove(id, entity)) failedAttempts.remove(id);
+                written++;
+            } else if (failedAttempts.merge(id, 1, Integer::sum) >= config.getMaxAttempts() && pending.remove(id, entity)) {
+                failedAttempts.remove(id);
+                deadLetters.add(entity);
+                deadLettered.increment();
+                log.error("Write-behind gave up on row '{}' after {} rejected flushes", id, config.getMaxAttempts(), item.getError());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        flushes.increment();
+        flushedRows.add(written);
+        failedRows.add(batch.size() - written);
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        if (written < batch.size()) {
+            log.warn("Write-behind flush failed for {} of {} rows, keeping them buffered", batch.size() - written, batch.size());
+        }
+        log.debug("Flushed {} buffered rows in {} ms", written, elapsed / 1_000_000.0);
+        return written;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Write-behind flush failed", e);
+        }
+    }
+}
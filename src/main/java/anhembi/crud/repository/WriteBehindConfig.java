@@ -0,0 +1,31 @@
+package anhembi.crud.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class WriteBehindConfig {
+    /**
+     * Buffered ids that trigger a flush without waiting for the interval
+     */
+    @Builder.Default
+    int maxPending = 1_000;
+    @Builder.Default
+    long flushIntervalMillis = 200;
+    /**
+     * Rows per JDBC batch of a flush
+     */
+    @Builder.Default
+    int chunkSize = Batches.DEFAULT_CHUNK_SIZE;
+    /**
+     * Flushes a rejected row is tried in before it is dropped to the dead letters
+     */
+    @Builder.Default
+    int maxAttempts = 5;
+    /**
+     * Registers a JVM shutdown hook that flushes what is still buffered
+     */
+    @Builder.Default
+    boolean flushOnShutdown = true;
+}
@@ -0,0 +1,28 @@
+package anhembi.crud.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class WriteBehindStats {
+    long updates;
+    /**
+     * Updates that replaced a buffered one for the same id before it was flushed
+     */
+    long coalesced;
+    int queueDepth;
+    int maxQueueDepth;
+    long flushes;
+    long flushedRows;
+    /**
+     * Rows the database rejected, they stay buffered and are tried again on the next flush
+     */
+    long failedRows;
+    /**
+     * Rows dropped after {@link WriteBehindConfig#getMaxAttempts()} rejected flushes
+     */
+    long deadLetters;
+    double averageFlushMillis;
+    double maxFlushMillis;
+}
@@ -4,17 +4,25 @@ import anhembi.crud.conn.ConnectionFactory;
 import anhembi.crud.domain.Anime;
 import anhembi.crud.domain.Producer;
 import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.Page;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 
 
 public class AnimeService {
+    static final int PAGE_SIZE = 100;
     public Scanner SCANNER = new Scanner(System.in);
 
-    ConnectionFactory connectionFactory = new ConnectionFactory();
-    AnimeRepository animeRepository = new AnimeRepository(connectionFactory);
+    AnimeRepository animeRepository;
+
+    public AnimeService() {
+        this(new AnimeRepository(new ConnectionFactory()));
+    }
+
+    public AnimeService(AnimeRepository animeRepository) {
+        this.animeRepository = animeRepository;
+    }
 
     public  void menu(int op) {
         switch (op) {
@@ -28,8 +36,12 @@ public class AnimeService {
     public  void findByName() {
         System.out.println("Type the name or empty to all");
         String name = SCANNER.nextLine();
-        List<Anime> animes = animeRepository.findByName(name);
-        animes.forEach(p -> System.out.printf("[%d] - %s %d %s%n", p.getId(), p.getName(), p.getEpisodes(), p.getProducer().getName()));
+        String pageToken = null;
+        do {
+            Page<Anime> page = animeRepository.findByName(name, PAGE_SIZE, pageToken);
+            page.getItems().forEach(p -> System.out.printf("[%d] - %s %d %s%n", p.getId(), p.getName(), p.getEpisodes(), p.getProducer().getName()));
+            pageToken = page.getNextPageToken();
+        } while (pageToken != null);
 
     }
 
@@ -63,7 +75,9 @@ public class AnimeService {
                 .name(name)
                 .producer(Producer.builder().id(producerId).build())
                 .build();
-        animeRepository.save(anime);
+        animeRepository.save(anime).ifPresentOrElse(
+                saved -> System.out.printf("Anime saved with id %d%n", saved.getId()),
+                () -> System.out.println("Anime could not be saved"));
     }
 
 
@@ -3,18 +3,26 @@ package anhembi.crud.service;
 
 import anhembi.crud.conn.ConnectionFactory;
 import anhembi.crud.domain.Producer;
+import anhembi.crud.repository.Page;
 import anhembi.crud.repository.ProducerRepository;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 
 
 public class ProducerService {
+    static final int PAGE_SIZE = 100;
     public Scanner SCANNER = new Scanner(System.in);
 
-    ConnectionFactory connectionFactory = new ConnectionFactory();
-    ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
+    ProducerRepository producerRepository;
+
+    public ProducerService() {
+        this(new ProducerRepository(new ConnectionFactory()));
+    }
+
+    public ProducerService(ProducerRepository producerRepository) {
+        this.producerRepository = producerRepository;
+    }
 
     public void menu(int op) {
         switch (op) {
@@ -29,8 +37,12 @@ public class ProducerService {
     public void findByName() {
         System.out.println("Type the name or empty to all");
         String name = SCANNER.nextLine();
-        List<Producer> producers = producerRepository.findByName(name);
-        producers.forEach(p -> System.out.printf("[%d] - %s%n", p.getId(), p.getName()));
+        String pageToken = null;
+        do {
+            Page<Producer> page = producerRepository.findByName(name, PAGE_SIZE, pageToken);
+            page.getItems().forEach(p -> System.out.printf("[%d] - %s%n", p.getId(), p.getName()));
+            pageToken = page.getNextPageToken();
+        } while (pageToken != null);
 
     }
 
@@ -57,7 +69,9 @@ public class ProducerService {
         System.out.println("Type the name of the producer");
         String name = SCANNER.nextLine();
         Producer producer = Producer.builder().name(name).build();
-        producerRepository.save(producer);
+        producerRepository.save(producer).ifPresentOrElse(
+                saved -> System.out.printf("Producer saved with id %d%n", saved.getId()),
+                () -> System.out.println("Producer could not be saved"));
     }
 
 
@@ -0,0 +1,74 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.conn.PoolConfig;
+import anhembi.crud.conn.PooledConnectionFactory;
+import anhembi.crud.domain.Anime;
+import anhembi.crud.domain.Producer;
+import anhembi.crud.repository.AnimeRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row save against batched saveAll, needs the anime_store database running.
+ * Run from the test classpath with: java org.openjdk.jmh.Main AnimeSaveBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AnimeSaveBenchmark {
+
+    @Param({"10000", "1000000"})
+    int rows;
+
+    @Param({"1"})
+    int producerId;
+
+    private PooledConnectionFactory connectionFactory;
+    private AnimeRepository animeRepository;
+    private List<Anime> animes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build());
+        animeRepository = new AnimeRepository(connectionFactory);
+        Producer producer = Producer.builder().id(producerId).build();
+        animes = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            animes.add(Anime.builder().name("benchmark-" + i).episodes(i % 1000).producer(producer).build());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInsertedRows() throws SQLException {
+        try (Connection conn = connectionFactory.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM `anime_store`.`anime` WHERE `name` LIKE 'benchmark-%'")) {
+            ps.execute();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Benchmark
+    public void saveOneByOne() {
+        for (Anime anime : animes) {
+            animeRepository.save(anime);
+        }
+    }
+
+    @Benchmark
+    public Object saveAllBatched() {
+        return animeRepository.saveAll(animes);
+    }
+}
@@ -0,0 +1,97 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.conn.PoolConfig;
+import anhembi.crud.conn.PooledConnectionFactory;
+import anhembi.crud.domain.Anime;
+import anhembi.crud.domain.Producer;
+import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.BatchResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row update and delete loops against updateAll and deleteAll, needs the anime_store database running.
+ * Every iteration inserts fresh rows first so each benchmark works on the same number of existing ids.
+ * Run from the test classpath with: java org.openjdk.jmh.Main BulkWriteBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class BulkWriteBenchmark {
+
+    @Param({"10000", "100000"})
+    int rows;
+
+    @Param({"1"})
+    int producerId;
+
+    private PooledConnectionFactory connectionFactory;
+    private AnimeRepository animeRepository;
+    private List<Anime> saved;
+    private List<Anime> renamed;
+    private List<Integer> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build());
+        animeRepository = new AnimeRepository(connectionFactory);
+    }
+
+    @Setup(Level.Iteration)
+    public void insertRows() {
+        Producer producer = Producer.builder().id(producerId).build();
+        List<Anime> animes = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            animes.add(Anime.builder().name("benchmark-" + i).episodes(i % 1000).producer(producer).build());
+        }
+        saved = animeRepository.saveAll(animes).getItems().stream().map(BatchResult.Item::getEntity).toList();
+        renamed = saved.stream().map(anime -> anime.toBuilder().name(anime.getName() + "-renamed").build()).toList();
+        ids = saved.stream().map(Anime::getId).toList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInsertedRows() throws SQLException {
+        try (Connection conn = connectionFactory.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM `anime_store`.`anime` WHERE `name` LIKE 'benchmark-%'")) {
+            ps.execute();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Benchmark
+    public void updateOneByOne() {
+        for (Anime anime : renamed) {
+            animeRepository.update(anime);
+        }
+    }
+
+    @Benchmark
+    public long updateAllBatched() {
+        return animeRepository.updateAll(renamed).getAffectedRows();
+    }
+
+    @Benchmark
+    public void deleteOneByOne() {
+        for (int id : ids) {
+            animeRepository.delete(id);
+        }
+    }
+
+    @Benchmark
+    public int deleteAllInLists() {
+        return animeRepository.deleteAll(ids);
+    }
+}
@@ -0,0 +1,89 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.index.FuzzyIndex;
+import anhembi.crud.index.FuzzyMatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Best 10 names within 1 or 2 edits of a misspelled name, on synthetic names made of random syllables.
+ * {@code scan} compares every name the way the cold fallback does, for reference.
+ * Run from the test classpath with: java org.openjdk.jmh.Main FuzzySearchBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FuzzySearchBenchmark {
+    private static final String[] SYLLABLES = {"na", "ru", "to", "ki", "me", "tsu", "shi", "ge", "bo", "ya", "ka", "gu",
+            "sa", "mo", "ha", "ne", "ko", "ri", "zu", "de"};
+
+    @Param({"100000", "1000000"})
+    int names;
+
+    @Param({"1", "2"})
+    int maxDistance;
+
+    FuzzyIndex index;
+    String[] nameList;
+    String[] misspelled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        Map<Integer, String> namesById = new HashMap<>(names * 2);
+        nameList = new String[names];
+        for (int id = 1; id <= names; id++) {
+            String name = word(random) + " " + word(random);
+            namesById.put(id, name);
+            nameList[id - 1] = name;
+        }
+        index = new FuzzyIndex();
+        index.rebuild(namesById);
+        misspelled = new String[1_024];
+        for (int i = 0; i < misspelled.length; i++) {
+            char[] name = namesById.get(1 + random.nextInt(names)).toCharArray();
+            name[random.nextInt(name.length)] = (char) ('a' + random.nextInt(26));
+            misspelled[i] = new String(name);
+        }
+    }
+
+    @Benchmark
+    public List<FuzzyMatch> search(Cursor cursor) {
+        return index.search(misspelled[cursor.next()], maxDistance, 10);
+    }
+
+    @Benchmark
+    public int scan(Cursor cursor) {
+        String term = misspelled[cursor.next()];
+        int matches = 0;
+        for (String name : nameList) {
+            if (FuzzyIndex.distance(name, term, maxDistance) <= maxDistance) matches++;
+        }
+        return matches;
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 2 + random.nextInt(3); i > 0; i--) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+
+        int next() {
+            return position++ & 1_023;
+        }
+    }
+}
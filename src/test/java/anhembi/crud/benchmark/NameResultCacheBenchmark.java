@@ -0,0 +1,87 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.cache.QueryCache;
+import anhembi.crud.conn.PoolConfig;
+import anhembi.crud.conn.PooledConnectionFactory;
+import anhembi.crud.repository.AnimeRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit path of the findByName result cache. The cache benchmark runs on synthetic terms, the repository ones need
+ * the anime_store database running and compare a cached search with a fresh LIKE scan (results dropped on each call).
+ * Run from the test classpath with: java org.openjdk.jmh.Main NameResultCacheBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameResultCacheBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        @Param({"1000", "100000"})
+        int terms;
+
+        QueryCache cache;
+        String[] keys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            cache = new QueryCache(terms * 50, Duration.ofHours(1));
+            keys = new String[terms];
+            for (int i = 0; i < terms; i++) {
+                keys[i] = "term " + i;
+                cache.putIfNotInvalidated(keys[i], random.ints(20, 1, 1_000_000).sorted().distinct().toArray(), cache.loadToken());
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SqlState {
+        PooledConnectionFactory connectionFactory;
+        AnimeRepository repository;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build());
+            repository = new AnimeRepository(connectionFactory);
+            repository.findByName("Naruto");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            connectionFactory.close();
+        }
+    }
+
+    @Benchmark
+    public int[] cacheHit(CacheState state) {
+        return state.cache.get(state.keys[ThreadLocalIndex.next(state.keys.length)]);
+    }
+
+    @Benchmark
+    public List<?> repositoryHit(SqlState state) {
+        return state.repository.findByName("Naruto");
+    }
+
+    @Benchmark
+    public List<?> repositoryMiss(SqlState state) {
+        // a distinct term per call never hits, which is what every search cost before the cache
+        return state.repository.findByName("Naruto " + ThreadLocalIndex.next(Integer.MAX_VALUE));
+    }
+
+    private static final class ThreadLocalIndex {
+        private static final ThreadLocal<Random> RANDOM = ThreadLocal.withInitial(() -> new Random(7));
+
+        private static int next(int bound) {
+            return RANDOM.get().nextInt(bound);
+        }
+    }
+}
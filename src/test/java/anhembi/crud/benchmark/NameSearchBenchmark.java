@@ -0,0 +1,87 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.conn.PoolConfig;
+import anhembi.crud.conn.PooledConnectionFactory;
+import anhembi.crud.index.TrigramIndex;
+import anhembi.crud.repository.AnimeRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Substring search through the trigram index against the LIKE '%term%' scan.
+ * The SQL benchmarks need the anime_store database running, the index benchmark runs on synthetic names.
+ * Run from the test classpath with: java org.openjdk.jmh.Main NameSearchBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameSearchBenchmark {
+    private static final String[] WORDS = {"naruto", "bleach", "piece", "hunter", "attack", "titan", "dragon", "ball",
+            "sword", "art", "online", "death", "note", "jujutsu", "kaisen", "demon", "slayer", "spy", "family", "chainsaw"};
+
+    @State(Scope.Benchmark)
+    public static class IndexState {
+        @Param({"100000", "1000000"})
+        int names;
+
+        TrigramIndex index;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            Map<Integer, String> namesById = new HashMap<>();
+            for (int id = 1; id <= names; id++) {
+                namesById.put(id, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + id);
+            }
+            index = new TrigramIndex();
+            index.rebuild(namesById);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SqlState {
+        PooledConnectionFactory connectionFactory;
+        AnimeRepository coldRepository;
+        AnimeRepository warmRepository;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build());
+            coldRepository = new AnimeRepository(connectionFactory);
+            warmRepository = new AnimeRepository(connectionFactory);
+            warmRepository.warmUp();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            connectionFactory.close();
+        }
+    }
+
+    @Benchmark
+    public int[] indexSearchRare(IndexState state) {
+        return state.index.search("chainsaw slayer 99");
+    }
+
+    @Benchmark
+    public int[] indexSearchCommon(IndexState state) {
+        return state.index.search("jujutsu kaisen");
+    }
+
+    @Benchmark
+    public List<?> sqlLikeScan(SqlState state) {
+        return state.coldRepository.findByName("Naruto");
+    }
+
+    @Benchmark
+    public List<?> indexThenFetchById(SqlState state) {
+        return state.warmRepository.findByName("Naruto");
+    }
+}
@@ -0,0 +1,56 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.conn.PoolConfig;
+import anhembi.crud.conn.PooledConnectionFactory;
+import anhembi.crud.domain.Anime;
+import anhembi.crud.repository.AnimeCriteria;
+import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.ProducerStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Per-producer episode totals computed by MySQL with GROUP BY against loading every anime and reducing in Java.
+ * Needs the anime_store database running.
+ * Run from the test classpath with: java org.openjdk.jmh.Main ProducerStatsBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProducerStatsBenchmark {
+    PooledConnectionFactory connectionFactory;
+    AnimeRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build());
+        repository = new AnimeRepository(connectionFactory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Benchmark
+    public List<ProducerStats> groupBy() {
+        return repository.statsByProducer(AnimeCriteria.builder().build());
+    }
+
+    @Benchmark
+    public Map<Integer, IntSummaryStatistics> clientSide() {
+        try (Stream<Anime> animes = repository.streamByName("")) {
+            return animes.collect(Collectors.groupingBy(anime -> anime.getProducer().getId(),
+                    Collectors.summarizingInt(Anime::getEpisodes)));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.index.PrefixIndex;
+import anhembi.crud.index.Suggestion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top 10 suggestions from the prefix index on synthetic names. A one letter prefix matches a large share of the
+ * names, a longer one only a handful, the cost should stay flat between the two and between the sizes.
+ * Run from the test classpath with: java org.openjdk.jmh.Main SuggestBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SuggestBenchmark {
+    private static final String[] WORDS = {"shingeki", "kimetsu", "naruto", "bleach", "one", "piece", "hunter", "sword",
+            "art", "online", "fullmetal", "alchemist", "death", "note", "steins", "gate", "kaguya", "sama", "mob", "psycho"};
+
+    @Param({"100000", "1000000"})
+    int names;
+
+    @Param({"n", "naruto pie"})
+    String prefix;
+
+    PrefixIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        Map<Integer, String> namesById = new HashMap<>(names * 2);
+        Map<Integer, Integer> episodesById = new HashMap<>(names * 2);
+        for (int id = 1; id <= names; id++) {
+            namesById.put(id, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + id);
+            episodesById.put(id, random.nextInt(1_000));
+        }
+        index = new PrefixIndex();
+        index.rebuild(namesById, episodesById);
+    }
+
+    @Benchmark
+    public List<Suggestion> suggest() {
+        return index.suggest(prefix, 10);
+    }
+}
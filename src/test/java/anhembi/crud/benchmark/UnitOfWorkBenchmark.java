@@ -0,0 +1,78 @@
+package anhembi.crud.benchmark;
+
+import anhembi.crud.conn.PoolConfig;
+import anhembi.crud.conn.PooledConnectionFactory;
+import anhembi.crud.conn.UnitOfWork;
+import anhembi.crud.domain.Anime;
+import anhembi.crud.domain.Producer;
+import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.ProducerRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Create a producer, then its animes" in autocommit (one commit per row) against one unit of work (one commit).
+ * Needs the anime_store database running.
+ * Run from the test classpath with: java org.openjdk.jmh.Main UnitOfWorkBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnitOfWorkBenchmark {
+
+    @Param({"50"})
+    int animes;
+
+    private PooledConnectionFactory connectionFactory;
+    private ProducerRepository producerRepository;
+    private AnimeRepository animeRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        connectionFactory = new PooledConnectionFactory(PoolConfig.builder().build());
+        producerRepository = new ProducerRepository(connectionFactory);
+        animeRepository = new AnimeRepository(connectionFactory);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInsertedRows() throws SQLException {
+        try (Connection conn = connectionFactory.getConnection();
+             PreparedStatement animes = conn.prepareStatement("DELETE FROM `anime_store`.`anime` WHERE `name` LIKE 'benchmark-%'");
+             PreparedStatement producers = conn.prepareStatement("DELETE FROM `anime_store`.`producer` WHERE `name` LIKE 'benchmark-%'")) {
+            animes.execute();
+            producers.execute();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Benchmark
+    public void autocommit() {
+        createProducerWithAnimes();
+    }
+
+    @Benchmark
+    public void unitOfWork() throws SQLException {
+        try (UnitOfWork work = UnitOfWork.begin(connectionFactory)) {
+            createProducerWithAnimes();
+            work.commit();
+        }
+    }
+
+    private void createProducerWithAnimes() {
+        Producer producer = producerRepository.save(Producer.builder().name("benchmark-producer").build()).orElseThrow();
+        for (int i = 0; i < animes; i++) {
+            animeRepository.save(Anime.builder().name("benchmark-" + i).episodes(12).producer(producer).build());
+        }
+    }
+}
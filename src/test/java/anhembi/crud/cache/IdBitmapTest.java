@@ -0,0 +1,88 @@
+package anhembi.crud.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdBitmapTest {
+
+    private final IdBitmap bitmap = new IdBitmap();
+
+    @Test
+    void mightExist_BeforeLoad_ShouldNotRuleAnythingOut() {
+        assertTrue(bitmap.mightExist(42));
+    }
+
+    @Test
+    void mightExist_ShouldRuleOutGapsAndKeepUnknownIdsAboveTheMax() {
+        bitmap.load(List.of(1, 2, 5, 64, 130));
+
+        assertTrue(bitmap.mightExist(64));
+        assertFalse(bitmap.mightExist(3));
+        assertFalse(bitmap.mightExist(0));
+        assertTrue(bitmap.mightExist(131));
+        assertEquals(2, bitmap.getStats().getNegativeHits());
+    }
+
+    @Test
+    void addAndRemove_ShouldFollowSavesAndDeletes() {
+        bitmap.load(List.of(1, 2));
+
+        bitmap.add(500);
+        bitmap.remove(2);
+
+        assertTrue(bitmap.mightExist(500));
+        assertFalse(bitmap.mightExist(2));
+        // another process may have inserted it
+        assertTrue(bitmap.mightExist(499));
+        assertEquals(2, bitmap.getStats().getIds());
+    }
+
+    @Test
+    void confirmMissing_ShouldCountFalsePositivesAndClearTheBit() {
+        bitmap.load(List.of(1, 2, 3, 4));
+        bitmap.mightExist(1);
+        bitmap.mightExist(2);
+
+        bitmap.confirmMissing(2, bitmap.missToken());
+
+        NegativeCacheStats stats = bitmap.getStats();
+        assertEquals(1, stats.getFalsePositives());
+        assertEquals(0.5, stats.getFalsePositiveRate());
+        assertFalse(bitmap.mightExist(2));
+    }
+
+    @Test
+    void confirmMissing_WhenAnIdWasAddedAfterTheToken_ShouldKeepTheBit() {
+        bitmap.load(List.of(1, 2, 3));
+        long token = bitmap.missToken();
+        bitmap.add(4);
+
+        bitmap.confirmMissing(4, token);
+
+        assertTrue(bitmap.mightExist(4));
+        assertEquals(0, bitmap.getStats().getFalsePositives());
+    }
+
+    @Test
+    void mightExist_AboveTheLoadedIds_ShouldStayTrueAfterALocalSaveOfAHigherId() {
+        bitmap.load(List.of(1, 2, 3));
+
+        bitmap.add(10);
+
+        assertTrue(bitmap.mightExist(10));
+        assertTrue(bitmap.mightExist(5));
+    }
+
+    @Test
+    void getStats_ShouldReportOneBitPerIdOfMemory() {
+        bitmap.load(IntStream.rangeClosed(1, 1_000_000).boxed().toList());
+
+        NegativeCacheStats stats = bitmap.getStats();
+        assertEquals(1_000_000, stats.getIds());
+        assertTrue(stats.getMemoryBytes() <= 1_000_000 / 8 + 64, "was " + stats.getMemoryBytes());
+    }
+}
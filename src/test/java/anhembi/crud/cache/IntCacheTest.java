@@ -0,0 +1,88 @@
+package anhembi.crud.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntCacheTest {
+
+    @Test
+    @DisplayName("should count hits and misses")
+    void get_ShouldReturnCachedValueAndCountLookups() {
+        IntCache<String> cache = new IntCache<>(10, Duration.ofMinutes(1));
+        cache.put(1, "Naruto");
+
+        assertEquals("Naruto", cache.get(1));
+        assertNull(cache.get(2));
+
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    @Test
+    @DisplayName("should drop entries once their TTL is over")
+    void get_AfterTtl_ShouldExpireEntry() throws InterruptedException {
+        IntCache<String> cache = new IntCache<>(10, Duration.ofMillis(1));
+        cache.put(1, "Naruto");
+        Thread.sleep(5);
+
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getStats().getExpirations());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("should stay within its size bound")
+    void put_OverMaxSize_ShouldEvictUnreferencedEntries() {
+        IntCache<Integer> cache = new IntCache<>(3, Duration.ofMinutes(1));
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.get(1);
+        cache.get(2);
+        cache.get(3);
+        cache.get(1);
+
+        cache.put(4, 4);
+        cache.put(5, 5);
+
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.getStats().getEvictions());
+        assertEquals(5, cache.get(5));
+    }
+
+    @Test
+    @DisplayName("should keep probing chains intact when entries are removed")
+    void invalidate_ShouldRemoveOnlyThatKey() {
+        IntCache<Integer> cache = new IntCache<>(5_000, Duration.ofMinutes(1));
+        for (int id = 1; id <= 5_000; id++) {
+            cache.put(id, id);
+        }
+        for (int id = 1; id <= 5_000; id += 2) {
+            cache.invalidate(id);
+        }
+
+        assertEquals(2_500, cache.size());
+        for (int id = 1; id <= 5_000; id++) {
+            assertEquals(id % 2 == 0 ? Integer.valueOf(id) : null, cache.get(id));
+        }
+    }
+
+    @Test
+    @DisplayName("should not store a value loaded before a concurrent invalidation")
+    void putIfNotInvalidated_AfterInvalidation_ShouldSkipStaleValue() {
+        IntCache<String> cache = new IntCache<>(10, Duration.ofMinutes(1));
+        long token = cache.loadToken(1);
+        cache.invalidate(1);
+
+        assertFalse(cache.putIfNotInvalidated(1, "stale", token));
+        assertNull(cache.get(1));
+        assertTrue(cache.putIfNotInvalidated(1, "fresh", cache.loadToken(1)));
+        assertEquals("fresh", cache.get(1));
+    }
+}
@@ -0,0 +1,66 @@
+package anhembi.crud.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheTest {
+
+    private final QueryCache cache = new QueryCache(5, Duration.ofMinutes(1));
+
+    @Test
+    void get_ShouldIgnoreCaseAndAccentsOfTheTerm() {
+        cache.putIfNotInvalidated("Pokémon", new int[]{1, 2}, cache.loadToken());
+
+        assertArrayEquals(new int[]{1, 2}, cache.get("POKEMON"));
+        assertNull(cache.get("Digimon"));
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    void put_OverMaxRows_ShouldEvictLeastRecentlyUsedTerms() {
+        cache.putIfNotInvalidated("naruto", new int[]{1, 2}, cache.loadToken());
+        cache.putIfNotInvalidated("bleach", new int[]{3, 4}, cache.loadToken());
+        cache.get("naruto");
+
+        cache.putIfNotInvalidated("one piece", new int[]{5, 6}, cache.loadToken());
+
+        assertNull(cache.get("bleach"));
+        assertNotNull(cache.get("naruto"));
+        assertEquals(4, cache.rows());
+        assertEquals(1, cache.getStats().getEvictions());
+        assertFalse(cache.putIfNotInvalidated("a", new int[]{1, 2, 3, 4, 5, 6}, cache.loadToken()));
+    }
+
+    @Test
+    void invalidate_ShouldDropTermsTheNameContainsOrTheIdBelongsTo() {
+        cache.putIfNotInvalidated("naruto", new int[]{1}, cache.loadToken());
+        cache.putIfNotInvalidated("boruto", new int[]{2}, cache.loadToken());
+        cache.putIfNotInvalidated("bleach", new int[]{3}, cache.loadToken());
+
+        cache.invalidate(9, "Naruto Shippūden");
+        cache.invalidate(2, null);
+
+        assertNull(cache.get("naruto"));
+        assertNull(cache.get("boruto"));
+        assertNotNull(cache.get("bleach"));
+    }
+
+    @Test
+    void putIfNotInvalidated_AfterAWrite_ShouldNotStoreTheStaleResult() {
+        long token = cache.loadToken();
+        cache.invalidate(7, "Naruto");
+
+        assertFalse(cache.putIfNotInvalidated("naruto", new int[]{1}, token));
+        assertNull(cache.get("naruto"));
+    }
+
+    @Test
+    void putIfNotInvalidated_WithLikeWildcards_ShouldNotCache() {
+        assertFalse(cache.putIfNotInvalidated("nar_to", new int[]{1}, cache.loadToken()));
+        assertNull(cache.get("nar_to"));
+    }
+}
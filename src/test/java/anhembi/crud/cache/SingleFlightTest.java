@@ -0,0 +1,106 @@
+package anhembi.crud.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, List<String>> singleFlight = new SingleFlight<>();
+
+    @Test
+    void execute_WhileSameKeyIsInFlight_ShouldShareTheResult() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("Naruto", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return List.of("Naruto", "Naruto Shippuden");
+                })));
+            }
+            while (singleFlight.getStats().getCoalesced() < callers - 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            List<String> first = results.get(0).get();
+            for (Future<List<String>> result : results) {
+                assertSame(first, result.get());
+            }
+            assertEquals(1, loads.get());
+            assertEquals(1, singleFlight.getStats().getExecutions());
+            assertEquals(0, singleFlight.getStats().getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_AfterPreviousCallEnded_ShouldRunTheLoaderAgain() {
+        AtomicInteger loads = new AtomicInteger();
+
+        singleFlight.execute("Naruto", () -> List.of(String.valueOf(loads.incrementAndGet())));
+        List<String> second = singleFlight.execute("Naruto", () -> List.of(String.valueOf(loads.incrementAndGet())));
+
+        assertEquals(List.of("2"), second);
+        assertEquals(0, singleFlight.getStats().getCoalesced());
+    }
+
+    @Test
+    void execute_WhenLoaderFails_ShouldThrowAndNotKeepTheKey() {
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("Naruto", () -> {
+            throw new IllegalStateException("Connection refused");
+        }));
+
+        assertEquals(List.of("Naruto"), singleFlight.execute("Naruto", () -> List.of("Naruto")));
+    }
+
+    @Test
+    void execute_WhenLoaderThrowsAnError_ShouldFailTheWaitingCallersToo() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<String>> first = executor.submit(() -> singleFlight.execute("Naruto", () -> {
+                await(release);
+                throw new StackOverflowError();
+            }));
+            while (singleFlight.getStats().getInFlight() == 0) {
+                Thread.onSpinWait();
+            }
+            Future<List<String>> second = executor.submit(() -> singleFlight.execute("Naruto", List::of));
+            while (singleFlight.getStats().getCoalesced() == 0) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(StackOverflowError.class, e.getCause());
+            assertThrows(ExecutionException.class, first::get);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
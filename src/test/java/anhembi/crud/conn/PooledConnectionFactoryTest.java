@@ -0,0 +1,135 @@
+package anhembi.crud.conn;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class PooledConnectionFactoryTest {
+
+    private ConnectionFactory physicalFactory;
+    private PooledConnectionFactory pool;
+    private final List<Connection> physicalConnections = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        physicalFactory = mock(ConnectionFactory.class);
+        when(physicalFactory.getConnection()).thenAnswer(invocation -> {
+            Connection physical = mock(Connection.class);
+            when(physical.isValid(anyInt())).thenReturn(true);
+            when(physical.getAutoCommit()).thenReturn(true);
+            physicalConnections.add(physical);
+            return physical;
+        });
+        pool = new PooledConnectionFactory(physicalFactory, PoolConfig.builder()
+                .minIdle(0)
+                .maxSize(2)
+                .connectionTimeoutMillis(50)
+                .leakDetectionThresholdMillis(1)
+                .housekeepingPeriodMillis(60_000)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("should reuse the physical connection once it is returned")
+    void getConnection_ReusesReturnedConnection() throws SQLException {
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+        second.close();
+
+        verify(physicalFactory, times(1)).getConnection();
+        assertTrue(first.isClosed());
+        assertEquals(2, pool.getStats().getBorrows());
+        assertEquals(1, pool.getStats().getIdle());
+        assertEquals(0, pool.getStats().getActive());
+    }
+
+    @Test
+    @DisplayName("should time out when every connection is borrowed")
+    void getConnection_WhenPoolExhausted_ShouldTimeOut() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+        assertEquals(2, pool.getStats().getActive());
+        assertEquals(1, pool.getStats().getTimeouts());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    @DisplayName("should discard idle connections that fail validation")
+    void getConnection_WhenIdleConnectionInvalid_ShouldOpenNewOne() throws SQLException {
+        pool.getConnection().close();
+        Connection physical = physicalConnections.get(0);
+        when(physical.isValid(anyInt())).thenReturn(false);
+
+        pool.getConnection().close();
+
+        verify(physicalFactory, times(2)).getConnection();
+        verify(physical).close();
+        assertEquals(1, pool.getStats().getValidationFailures());
+    }
+
+    @Test
+    @DisplayName("should reject calls on a connection that was already returned")
+    void returnedConnection_ShouldNotBeUsable() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+        assertEquals(1, pool.getStats().getIdle());
+    }
+
+    @Test
+    @DisplayName("should report connections held past the leak threshold")
+    void housekeep_ShouldDetectLeaks() throws Exception {
+        Connection connection = pool.getConnection();
+        Thread.sleep(5);
+
+        pool.housekeep();
+        pool.housekeep();
+
+        assertEquals(1, pool.getStats().getLeaksDetected());
+        connection.close();
+    }
+
+    @Test
+    @DisplayName("should not top up idle connections past the max size")
+    void housekeep_WhenConnectionsAreBorrowed_ShouldKeepTheTotalWithinMaxSize() throws SQLException {
+        PooledConnectionFactory filled = new PooledConnectionFactory(physicalFactory, PoolConfig.builder()
+                .minIdle(2)
+                .maxSize(2)
+                .housekeepingPeriodMillis(60_000)
+                .build());
+        try {
+            Connection connection = filled.getConnection();
+
+            filled.housekeep();
+
+            assertEquals(2, filled.getStats().getTotal());
+            assertEquals(1, filled.getStats().getIdle());
+            connection.close();
+        } finally {
+            filled.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package anhembi.crud.conn;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class UnitOfWorkTest {
+
+    private final List<Connection> opened = new ArrayList<>();
+    private ConnectionFactory connectionFactory;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new ConnectionFactory() {
+            @Override
+            protected Connection openConnection() {
+                Connection physical = mock(Connection.class);
+                opened.add(physical);
+                return physical;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("should hand out one connection for the whole unit and commit it once")
+    void commit_ShouldCommitTheSharedConnectionOnce() throws SQLException {
+        List<String> events = new ArrayList<>();
+        try (UnitOfWork work = UnitOfWork.begin(connectionFactory)) {
+            Connection first = connectionFactory.getConnection();
+            first.close();
+            Connection second = connectionFactory.getConnection();
+            UnitOfWork.afterCommit(connectionFactory, () -> events.add("hook"));
+
+            assertSame(first, second);
+            assertTrue(events.isEmpty());
+            work.commit();
+        }
+
+        Connection physical = opened.get(0);
+        assertEquals(1, opened.size());
+        assertEquals(List.of("hook"), events);
+        verify(physical).setAutoCommit(false);
+        verify(physical).commit();
+        verify(physical, never()).rollback();
+        verify(physical).setAutoCommit(true);
+        verify(physical).close();
+        assertFalse(UnitOfWork.isActive(connectionFactory));
+    }
+
+    @Test
+    @DisplayName("should roll back and drop hooks when closed without commit")
+    @SuppressWarnings("try")
+    void close_WithoutCommit_ShouldRollBack() throws SQLException {
+        List<String> events = new ArrayList<>();
+        try (UnitOfWork ignored = UnitOfWork.begin(connectionFactory)) {
+            UnitOfWork.afterCommit(connectionFactory, () -> events.add("hook"));
+        }
+
+        verify(opened.get(0)).rollback();
+        verify(opened.get(0), never()).commit();
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    @DisplayName("should roll a nested unit back to its savepoint and keep the outer work")
+    @SuppressWarnings("try")
+    void nested_RolledBack_ShouldOnlyUndoItsOwnWork() throws SQLException {
+        List<String> events = new ArrayList<>();
+        try (UnitOfWork outer = UnitOfWork.begin(connectionFactory)) {
+            Connection physical = opened.get(0);
+            Savepoint savepoint = mock(Savepoint.class);
+            when(physical.setSavepoint()).thenReturn(savepoint);
+            UnitOfWork.afterCommit(connectionFactory, () -> events.add("outer"));
+            try (UnitOfWork ignored = UnitOfWork.begin(connectionFactory)) {
+                UnitOfWork.afterCommit(connectionFactory, () -> events.add("inner"));
+            }
+            try (UnitOfWork inner = UnitOfWork.begin(connectionFactory)) {
+                UnitOfWork.afterCommit(connectionFactory, () -> events.add("kept"));
+                inner.commit();
+            }
+            outer.commit();
+
+            verify(physical).rollback(savepoint);
+            verify(physical).releaseSavepoint(savepoint);
+            verify(physical).commit();
+        }
+
+        assertEquals(1, opened.size());
+        assertEquals(List.of("outer", "kept"), events);
+    }
+
+    @Test
+    @DisplayName("should map a repository's own commits and rollbacks onto a savepoint")
+    void boundConnection_ShouldTurnChunkTransactionsIntoSavepoints() throws SQLException {
+        try (UnitOfWork work = UnitOfWork.begin(connectionFactory)) {
+            Connection physical = opened.get(0);
+            Savepoint first = mock(Savepoint.class);
+            Savepoint second = mock(Savepoint.class);
+            when(physical.setSavepoint(anyString())).thenReturn(first, second);
+            Connection conn = connectionFactory.getConnection();
+
+            conn.setAutoCommit(false);
+            assertFalse(conn.getAutoCommit());
+            conn.commit();
+            conn.rollback();
+            conn.setAutoCommit(true);
+            assertTrue(conn.getAutoCommit());
+            assertThrows(SQLException.class, conn::rollback);
+
+            verify(physical, times(2)).setSavepoint(anyString());
+            verify(physical).rollback(second);
+            verify(physical).releaseSavepoint(second);
+            verify(physical, never()).commit();
+            work.commit();
+        }
+    }
+
+    @Test
+    @DisplayName("should only let the innermost unit commit")
+    @SuppressWarnings("try")
+    void commit_OnOuterUnitWhileNestedIsOpen_ShouldThrow() throws SQLException {
+        try (UnitOfWork outer = UnitOfWork.begin(connectionFactory);
+             UnitOfWork ignored = UnitOfWork.begin(connectionFactory)) {
+            assertThrows(IllegalStateException.class, outer::commit);
+        }
+        assertFalse(UnitOfWork.isActive(connectionFactory));
+    }
+
+    @Test
+    @DisplayName("should run hooks right away and open fresh connections outside a unit")
+    void outsideAUnit_ShouldNotDefer() throws SQLException {
+        List<String> events = new ArrayList<>();
+
+        UnitOfWork.afterCommit(connectionFactory, () -> events.add("hook"));
+
+        assertEquals(List.of("hook"), events);
+        assertNotSame(connectionFactory.getConnection(), connectionFactory.getConnection());
+    }
+}
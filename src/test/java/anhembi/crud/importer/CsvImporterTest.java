@@ -0,0 +1,135 @@
+package anhembi.crud.importer;
+
+import anhembi.crud.conn.ConnectionFactory;
+import anhembi.crud.domain.Anime;
+import anhembi.crud.domain.Producer;
+import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.BatchResult;
+import anhembi.crud.repository.ProducerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class CsvImporterTest {
+    private static final String HEADER = "name,episodes,producer\n";
+
+    @TempDir
+    Path directory;
+
+    private final List<Anime> saved = new ArrayList<>();
+    private final List<Connection> connections = new ArrayList<>();
+    private ProducerRepository producerRepository;
+    private AnimeRepository animeRepository;
+    private CsvImporter importer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ConnectionFactory connectionFactory = new ConnectionFactory() {
+            @Override
+            protected Connection openConnection() {
+                Connection connection = mock(Connection.class);
+                connections.add(connection);
+                return connection;
+            }
+        };
+        producerRepository = mock(ProducerRepository.class);
+        animeRepository = mock(AnimeRepository.class);
+        when(producerRepository.streamByName("")).thenAnswer(invocation -> Stream.of(Producer.builder().id(1).name("Madhouse").build()));
+        AtomicInteger producerIds = new AtomicInteger(100);
+        when(producerRepository.importAll(anyCollection(), anyInt())).thenAnswer(invocation -> {
+            List<BatchResult.Item<Producer>> items = new ArrayList<>();
+            for (Producer producer : (Collection<Producer>) invocation.getArgument(0)) {
+                items.add(new BatchResult.Item<>(producer.toBuilder().id(producerIds.getAndIncrement()).build(), true, null, 1));
+            }
+            return new BatchResult<>(items);
+        });
+        when(animeRepository.importAll(anyCollection(), anyInt())).thenAnswer(invocation -> {
+            List<BatchResult.Item<Anime>> items = new ArrayList<>();
+            for (Anime anime : (Collection<Anime>) invocation.getArgument(0)) {
+                boolean ok = !anime.getName().equals("Broken");
+                if (ok) saved.add(anime);
+                items.add(new BatchResult.Item<>(anime, ok, ok ? null : new SQLException("Data too long"), ok ? 1 : 0));
+            }
+            return new BatchResult<>(items);
+        });
+        // blocks smaller than a line make the reader grow its buffer and cut many blocks
+        importer = new CsvImporter(connectionFactory, producerRepository, animeRepository,
+                ImportConfig.builder().blockSizeBytes(16).parserThreads(3).build());
+    }
+
+    @Test
+    void importFile_ShouldLoadValidRowsAndRejectTheRest() throws IOException {
+        Path file = write("catalog.csv", HEADER
+                + "Monster,74,MADHOUSE\n"
+                + "Cowboy Bebop,26,Sunrise\r\n"
+                + "\n"
+                + "Naruto,many,Pierrot\n"
+                + "Bleach,366\n"
+                + "\"Love, Chunibyo\",12,Kyoto Animation\n"
+                + "Broken,1,Sunrise\n"
+                + "Gundam,43,sunrise");
+
+        ImportReport report = importer.importFile(file);
+
+        assertEquals(4, report.getImported());
+        assertEquals(3, report.getRejected());
+        assertEquals(2, report.getProducersCreated());
+        assertEquals(List.of("Monster", "Cowboy Bebop", "Love, Chunibyo", "Gundam"), saved.stream().map(Anime::getName).toList());
+        assertEquals(1, saved.get(0).getProducer().getId());
+        assertEquals(saved.get(1).getProducer().getId(), saved.get(3).getProducer().getId());
+        connections.forEach(connection -> {
+            try {
+                verify(connection).commit();
+            } catch (SQLException e) {
+                fail(e);
+            }
+        });
+
+        List<String> rejects = Files.readAllLines(file.resolveSibling("catalog.csv.rejects"));
+        assertEquals(List.of(
+                "5\tepisodes is not a number\tNaruto,many,Pierrot",
+                "6\texpected 3 fields, got 2\tBleach,366",
+                "8\tData too long\tBroken,1,Sunrise"), rejects);
+        assertFalse(Files.exists(file.resolveSibling("catalog.csv.checkpoint")));
+        verify(animeRepository, never()).saveAll(anyCollection(), anyInt());
+        verify(animeRepository).finishImport();
+        verify(producerRepository).finishImport();
+    }
+
+    @Test
+    void importFile_WithCheckpoint_ShouldContinueAfterTheLastCommittedBlock() throws IOException {
+        String done = HEADER + "Monster,74,Madhouse\n";
+        Path file = write("catalog.tsv", done.replace(',', '\t') + "Paprika\t1\tMadhouse\n");
+        new Checkpoint(done.getBytes(StandardCharsets.UTF_8).length, 2, 1, 0, 0)
+                .write(file.resolveSibling("catalog.tsv.checkpoint"));
+
+        ImportReport report = importer.importFile(file);
+
+        assertEquals(2, report.getResumedFromLine());
+        assertEquals(2, report.getImported());
+        assertEquals(List.of("Paprika"), saved.stream().map(Anime::getName).toList());
+        verify(producerRepository, never()).importAll(anyCollection(), anyInt());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
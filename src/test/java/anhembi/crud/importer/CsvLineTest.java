@@ -0,0 +1,32 @@
+package anhembi.crud.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvLineTest {
+
+    @Test
+    void split_ShouldTrimUnquotedFields() {
+        assertEquals(List.of("Naruto", "220", "Pierrot"), CsvLine.split(" Naruto , 220,Pierrot ", ','));
+    }
+
+    @Test
+    void split_QuotedField_ShouldKeepDelimitersAndEscapedQuotes() {
+        assertEquals(List.of("Love, Chunibyo & \"Other\" Delusions", "12", "Kyoto Animation"),
+                CsvLine.split("\"Love, Chunibyo & \"\"Other\"\" Delusions\",12,Kyoto Animation", ','));
+    }
+
+    @Test
+    void split_ShouldKeepEmptyFields() {
+        assertEquals(List.of("", "12", ""), CsvLine.split("\t12\t", '\t'));
+    }
+
+    @Test
+    void split_WithUnbalancedQuotes_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> CsvLine.split("\"Naruto,220,Pierrot", ','));
+        assertThrows(IllegalArgumentException.class, () -> CsvLine.split("\"Naruto\"x,220,Pierrot", ','));
+    }
+}
@@ -0,0 +1,42 @@
+package anhembi.crud.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForeignKeyIndexTest {
+
+    private final ForeignKeyIndex index = new ForeignKeyIndex();
+
+    @Test
+    void childrenOf_BeforeRebuild_ShouldLeaveItToSql() {
+        assertNull(index.childrenOf(1));
+        assertNull(index.counts());
+    }
+
+    @Test
+    void childrenOf_ShouldReturnSortedIdsOfTheParent() {
+        index.rebuild(Map.of(3, 1, 1, 1, 2, 2, 4, 1));
+
+        assertArrayEquals(new int[]{1, 3, 4}, index.childrenOf(1));
+        assertArrayEquals(new int[]{2}, index.childrenOf(2));
+        assertArrayEquals(new int[0], index.childrenOf(9));
+        assertEquals(Map.of(1, 3, 2, 1), index.counts());
+    }
+
+    @Test
+    void putAndRemove_ShouldMoveIdsBetweenParents() {
+        index.rebuild(Map.of(1, 1, 2, 2));
+
+        index.put(1, 2);
+        index.put(500, 3);
+        index.remove(2);
+
+        assertArrayEquals(new int[0], index.childrenOf(1));
+        assertArrayEquals(new int[]{1}, index.childrenOf(2));
+        assertArrayEquals(new int[]{500}, index.childrenOf(3));
+        assertEquals(Map.of(2, 1, 3, 1), index.counts());
+    }
+}
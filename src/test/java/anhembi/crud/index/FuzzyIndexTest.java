@@ -0,0 +1,99 @@
+package anhembi.crud.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FuzzyIndexTest {
+
+    private FuzzyIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FuzzyIndex();
+        index.rebuild(Map.of(1, "Naruto", 2, "Boruto", 3, "Nana", 4, "Pokémon", 5, "Naruto"));
+    }
+
+    @Test
+    @DisplayName("should find misspelled names, closest first")
+    void search_ShouldReturnMatchesWithTheirDistance() {
+        assertEquals(List.of(new FuzzyMatch(1, "Naruto", 1), new FuzzyMatch(5, "Naruto", 1)), index.search("Narutto", 1, 10));
+        assertEquals(List.of(new FuzzyMatch(1, "Naruto", 1), new FuzzyMatch(5, "Naruto", 1), new FuzzyMatch(2, "Boruto", 3)),
+                index.search("narutto", 3, 10));
+        assertEquals(List.of(new FuzzyMatch(4, "Pokémon", 0)), index.search("POKEMON", 0, 10));
+        assertEquals(List.of(), index.search("Bleach", 2, 10));
+    }
+
+    @Test
+    @DisplayName("should keep only the closest matches up to the limit")
+    void search_ShouldHonourLimit() {
+        assertEquals(List.of(new FuzzyMatch(1, "Naruto", 0)), index.search("naruto", 4, 1));
+        assertThrows(IllegalArgumentException.class, () -> index.search("naruto", 1, 0));
+    }
+
+    @Test
+    @DisplayName("should follow saves, renames and deletes")
+    void putAndRemove_ShouldBeVisibleRightAway() {
+        index.put(6, "Nanatsu");
+        index.put(1, "Bleach");
+        index.remove(5);
+
+        assertEquals(List.of(), index.search("naruto", 1, 10));
+        assertEquals(List.of(new FuzzyMatch(1, "Bleach", 1)), index.search("beach", 1, 10));
+        assertEquals(List.of(new FuzzyMatch(3, "Nana", 1), new FuzzyMatch(6, "Nanatsu", 2)), index.search("nanat", 2, 10));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    @DisplayName("should agree with comparing every name, also after deletes were merged")
+    void search_ShouldMatchABruteForceScan() {
+        Random random = new Random(7);
+        Map<Integer, String> names = new HashMap<>();
+        for (int id = 1; id <= 5_000; id++) {
+            names.put(id, randomName(random));
+        }
+        index.rebuild(names);
+        for (int id = 1; id <= 3_000; id++) {
+            index.remove(id);
+            names.remove(id);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            String term = randomName(random);
+            List<FuzzyMatch> expected = new ArrayList<>();
+            names.forEach((id, name) -> {
+                int distance = FuzzyIndex.distance(name, term, 2);
+                if (distance <= 2) expected.add(new FuzzyMatch(id, name, distance));
+            });
+            expected.sort(Comparator.comparingInt(FuzzyMatch::getDistance).thenComparing(FuzzyMatch::getName)
+                    .thenComparingInt(FuzzyMatch::getId));
+
+            assertEquals(expected.subList(0, Math.min(5, expected.size())), index.search(term, 2, 5), term);
+        }
+    }
+
+    @Test
+    void distance_ShouldGiveUpPastTheMax() {
+        assertEquals(3, FuzzyIndex.distance("kitten", "sitting", 5));
+        assertEquals(3, FuzzyIndex.distance("kitten", "sitting", 2));
+        assertEquals(0, FuzzyIndex.distance("Shippūden", "shippuden", 0));
+        assertEquals(5, FuzzyIndex.distance("", "abcde", 5));
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[3 + random.nextInt(4)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(name);
+    }
+}
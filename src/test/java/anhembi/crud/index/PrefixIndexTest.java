@@ -0,0 +1,73 @@
+package anhembi.crud.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixIndexTest {
+
+    private PrefixIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PrefixIndex();
+        index.rebuild(
+                Map.of(1, "Naruto", 2, "Naruto Shippūden", 3, "Nana", 4, "One Piece", 5, "Natsume Yuujinchou"),
+                Map.of(1, 220, 2, 500, 3, 47, 4, 1100, 5, 13));
+    }
+
+    private static List<Integer> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getId).toList();
+    }
+
+    @Test
+    @DisplayName("should suggest names starting with the prefix, highest rank first")
+    void suggest_ShouldRankMatchesByRank() {
+        assertEquals(List.of(2, 1, 3, 5), ids(index.suggest("na", 10)));
+        assertEquals(List.of(2, 1), ids(index.suggest("NARUTO", 10)));
+        assertEquals(List.of(2), ids(index.suggest("naruto shippu", 10)));
+        assertEquals(List.of(), ids(index.suggest("bleach", 10)));
+    }
+
+    @Test
+    @DisplayName("should stop at the limit")
+    void suggest_ShouldHonourLimit() {
+        assertEquals(List.of(2, 1), ids(index.suggest("n", 2)));
+        assertEquals(List.of(4, 2, 1, 3, 5), ids(index.suggest("", 10)));
+    }
+
+    @Test
+    @DisplayName("should follow saves, renames and deletes")
+    void putAndRemove_ShouldBeVisibleRightAway() {
+        index.put(6, "Nausicaa", 1);
+        index.put(1, "Boruto", 220);
+        index.remove(3);
+
+        assertEquals(List.of(2, 5, 6), ids(index.suggest("na", 10)));
+        assertEquals(List.of(1), ids(index.suggest("bor", 10)));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    @DisplayName("should give the same answers after merging many writes")
+    void put_ManyWrites_ShouldCompactWithoutChangingResults() {
+        Map<Integer, String> names = new HashMap<>();
+        for (int id = 10; id < 3_000; id++) {
+            index.put(id, "Title " + id, id % 7);
+            names.put(id, "Title " + id);
+        }
+        index.remove(2);
+
+        List<Suggestion> top = index.suggest("title 1", 3);
+
+        assertEquals(List.of(1000, 1007, 1014), ids(top));
+        assertEquals(List.of(1), ids(index.suggest("naruto", 10)));
+        assertEquals(names.size() + 4, index.size());
+    }
+}
@@ -0,0 +1,100 @@
+package anhembi.crud.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeIndexTest {
+
+    private final RangeIndex index = new RangeIndex();
+
+    @Test
+    void rangeAndTop_BeforeRebuild_ShouldLeaveItToSql() {
+        assertNull(index.range(1, 10));
+        assertNull(index.top(3));
+    }
+
+    @Test
+    void range_ShouldReturnIdsByValueWithBothBoundsIncluded() {
+        index.rebuild(Map.of(1, 220, 2, 366, 3, 12, 4, 500, 5, 220, 6, 501));
+
+        assertArrayEquals(new int[]{1, 5, 2, 4}, index.range(100, 500));
+        assertArrayEquals(new int[]{3}, index.range(0, 12));
+        assertArrayEquals(new int[0], index.range(600, Integer.MAX_VALUE));
+        assertArrayEquals(new int[0], index.range(10, 5));
+    }
+
+    @Test
+    void top_ShouldReturnLargestFirstAndLowerIdsFirstOnTies() {
+        index.rebuild(Map.of(1, 220, 2, 366, 3, 12, 4, 220, 5, 220));
+
+        assertArrayEquals(new int[]{2, 1, 4}, index.top(3));
+        assertArrayEquals(new int[]{2, 1, 4, 5, 3}, index.top(10));
+        assertThrows(IllegalArgumentException.class, () -> index.top(0));
+    }
+
+    @Test
+    void putAndRemove_ShouldKeepTheOrderAgainstAFullSort() {
+        Random random = new Random(3);
+        Map<Integer, Integer> values = new HashMap<>();
+        index.rebuild(values);
+        for (int i = 0; i < 5_000; i++) {
+            int id = 1 + random.nextInt(2_000);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                values.remove(id);
+            } else {
+                int value = random.nextInt(300);
+                index.put(id, value);
+                values.put(id, value);
+            }
+        }
+
+        int[] expected = values.entrySet().stream()
+                .filter(entry -> entry.getValue() >= 100 && entry.getValue() <= 200)
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .mapToInt(Map.Entry::getKey).toArray();
+        int[] longest = values.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(20).mapToInt(Map.Entry::getKey).toArray();
+        assertArrayEquals(expected, index.range(100, 200));
+        assertArrayEquals(longest, index.top(20));
+        assertEquals(values.size(), index.size());
+    }
+
+    @Test
+    void putAll_ShouldMatchOneByOnePuts() {
+        Random random = new Random(5);
+        RangeIndex oneByOne = new RangeIndex();
+        Map<Integer, Integer> initial = new HashMap<>();
+        for (int id = 1; id <= 1_000; id++) {
+            initial.put(id, random.nextInt(300));
+        }
+        index.rebuild(initial);
+        oneByOne.rebuild(initial);
+        Map<Integer, Integer> batch = new HashMap<>();
+        for (int i = 0; i < 800; i++) {
+            batch.put(1 + random.nextInt(2_000), random.nextInt(300));
+        }
+
+        index.putAll(batch);
+        batch.forEach(oneByOne::put);
+
+        assertArrayEquals(oneByOne.range(0, Integer.MAX_VALUE), index.range(0, Integer.MAX_VALUE));
+        assertEquals(oneByOne.size(), index.size());
+    }
+
+    @Test
+    void putAndPutAll_BeforeRebuild_ShouldBeIgnored() {
+        index.put(1, 220);
+        index.putAll(Map.of(2, 366));
+        index.rebuild(Map.of(3, 12));
+
+        assertArrayEquals(new int[]{3}, index.range(0, Integer.MAX_VALUE));
+    }
+}
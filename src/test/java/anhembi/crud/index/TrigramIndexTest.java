@@ -0,0 +1,73 @@
+package anhembi.crud.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex();
+        index.rebuild(Map.of(
+                1, "Naruto",
+                2, "Naruto Shipp\u016bden",
+                3, "Boruto",
+                4, "One Piece"));
+    }
+
+    @Test
+    @DisplayName("should not answer before it is built")
+    void search_WhenNotBuilt_ShouldReturnNull() {
+        assertNull(new TrigramIndex().search("Naruto"));
+    }
+
+    @Test
+    @DisplayName("should match substrings case and accent insensitively like the MySQL collation")
+    void search_ShouldMatchLikeSemantics() {
+        assertArrayEquals(new int[]{1, 2}, index.search("naru"));
+        assertArrayEquals(new int[]{2}, index.search("SHIPPUDEN"));
+        assertArrayEquals(new int[]{1, 2, 3}, index.search("uto"));
+        assertArrayEquals(new int[]{4}, index.search("e P"));
+        assertArrayEquals(new int[0], index.search("Bleach"));
+    }
+
+    @Test
+    @DisplayName("should verify candidates so scattered trigrams do not match")
+    void search_ShouldRejectCandidatesWithNonAdjacentTrigrams() {
+        index.put(5, "abcxbcd");
+
+        assertArrayEquals(new int[0], index.search("abcd"));
+    }
+
+    @Test
+    @DisplayName("should answer terms shorter than a trigram")
+    void search_WithShortTerm_ShouldScanNames() {
+        assertArrayEquals(new int[]{4}, index.search("ec"));
+        assertArrayEquals(new int[]{1, 2}, index.search("na"));
+    }
+
+    @Test
+    @DisplayName("should defer to SQL for LIKE wildcards")
+    void search_WithWildcards_ShouldReturnNull() {
+        assertNull(index.search("Nar_to"));
+        assertNull(index.search("100%"));
+    }
+
+    @Test
+    @DisplayName("should follow renames and deletes")
+    void putAndRemove_ShouldKeepIndexCurrent() {
+        index.put(3, "Boruto: Next Generations");
+        index.remove(1);
+
+        assertArrayEquals(new int[]{2}, index.search("Naruto"));
+        assertArrayEquals(new int[]{3}, index.search("Generation"));
+        assertEquals(4 - 1, index.size());
+    }
+}
@@ -0,0 +1,65 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.repository.AnimeCriteria.NameMatch;
+import anhembi.crud.repository.AnimeCriteria.Sort;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AnimeCriteriaTest {
+    private static final String SELECT = "SELECT a.id FROM anime_store.anime a\n";
+
+    @Test
+    void toSql_WithEveryFilter_ShouldUseBareColumnComparisons() {
+        AnimeCriteria criteria = AnimeCriteria.builder().id(1).name("naru").minEpisodes(12).maxEpisodes(24).producerId(3)
+                .sort(Sort.EPISODES_DESC).limit(10).build();
+
+        assertEquals(SELECT + """
+                where a.id = ? and a.name like ? and a.episodes >= ? and a.episodes <= ? and a.producer_id = ?
+                order by a.episodes desc, a.id
+                limit ?;""", criteria.toSql(SELECT));
+    }
+
+    @Test
+    void toSql_WithoutFilters_ShouldLeaveOutTheWhereClause() {
+        assertEquals(SELECT + "order by a.id;", AnimeCriteria.builder().build().toSql(SELECT));
+    }
+
+    @Test
+    void whereClause_ShouldHoldOnlyTheFilters() throws SQLException {
+        AnimeCriteria criteria = AnimeCriteria.builder().producerId(3).sort(Sort.NAME).limit(10).build();
+        PreparedStatement ps = mock(PreparedStatement.class);
+
+        assertEquals("where a.producer_id = ?\n", criteria.whereClause());
+        assertEquals(2, criteria.bindFilters(ps));
+        verify(ps).setInt(1, 3);
+        verifyNoMoreInteractions(ps);
+    }
+
+    @Test
+    void bind_ShouldEscapeTheNameAndFollowThePlaceholderOrder() throws SQLException {
+        PreparedStatement ps = mock(PreparedStatement.class);
+
+        AnimeCriteria.builder().name("100%").nameMatch(NameMatch.PREFIX).maxEpisodes(24).limit(5).build().bind(ps);
+
+        verify(ps).setString(1, "100\\%%");
+        verify(ps).setInt(2, 24);
+        verify(ps).setInt(3, 5);
+        verifyNoMoreInteractions(ps);
+    }
+
+    @Test
+    void shape_ShouldOnlyDependOnWhichFiltersAreSet() {
+        AnimeCriteria naruto = AnimeCriteria.builder().name("Naruto").minEpisodes(1).build();
+        AnimeCriteria bleach = AnimeCriteria.builder().name("Bleach").minEpisodes(300).build();
+
+        assertEquals(naruto.shape(), bleach.shape());
+        assertNotEquals(naruto.shape(), naruto.toBuilder().maxEpisodes(2).build().shape());
+        assertNotEquals(naruto.shape(), AnimeCriteria.builder().name("Naruto").minEpisodes(1).nameMatch(NameMatch.PREFIX).build().shape());
+        assertNotEquals(naruto.shape(), AnimeCriteria.builder().name("Naruto").minEpisodes(1).sort(Sort.NAME).build().shape());
+    }
+}
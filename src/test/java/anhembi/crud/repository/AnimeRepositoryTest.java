@@ -1,13 +1,16 @@
 package anhembi.crud.repository;
 
 import anhembi.crud.conn.ConnectionFactory;
+import anhembi.crud.conn.UnitOfWork;
 import anhembi.crud.domain.Anime;
 import anhembi.crud.domain.Producer;
+import anhembi.crud.index.FuzzyMatch;
 import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.core.Logger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -16,11 +19,21 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @Log4j2
@@ -95,6 +108,411 @@ class AnimeRepositoryTest {
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    void findByNamePage_ShouldReturnTokenForNextPage_WhenMoreRowsExist() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getInt("id")).thenReturn(4, 7, 9);
+        when(resultSet.getString("name")).thenReturn("Naruto");
+
+        Page<Anime> page = animeRepository.findByName("Naruto", 2, null);
+
+        verify(preparedStatement).setInt(2, 0);
+        verify(preparedStatement).setInt(3, 3);
+        assertEquals(2, page.getItems().size());
+        assertTrue(page.hasNext());
+
+        animeRepository.findByName("Naruto", 2, page.getNextPageToken());
+
+        verify(preparedStatement).setInt(2, 7);
+    }
+
+    @Test
+    void findByNamePage_ShouldReturnNoToken_OnLastPage() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt("id")).thenReturn(4);
+
+        Page<Anime> page = animeRepository.findByName("Naruto", 2, null);
+
+        assertEquals(1, page.getItems().size());
+        assertFalse(page.hasNext());
+        assertThrows(IllegalArgumentException.class, () -> animeRepository.findByName("Naruto", 2, "not-a-token"));
+    }
+
+    @Test
+    void findByNamePage_WhenNameIndexIsWarm_ShouldCutThePageFromTheIndexedIds() throws SQLException {
+        Connection connection = warmUp(List.of(anime(1, "Naruto", 220, 7), anime(2, "Bleach", 366, 8),
+                anime(3, "Boruto", 293, 7), anime(4, "Utopia", 12, 9)));
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 3, 4);
+
+        Page<Anime> first = animeRepository.findByName("uto", 2, null);
+        Page<Anime> second = animeRepository.findByName("uto", 2, first.getNextPageToken());
+
+        assertEquals(List.of(1, 3), first.getItems().stream().map(Anime::getId).toList());
+        assertTrue(first.hasNext());
+        assertEquals(List.of(4), second.getItems().stream().map(Anime::getId).toList());
+        assertFalse(second.hasNext());
+        verify(connection).prepareStatement(contains("where a.id in (?, ?)"));
+        verify(connection).prepareStatement(contains("where a.id in (?)"));
+        verify(connection, never()).prepareStatement(contains("like"));
+    }
+
+    @Test
+    void streamByName_ShouldReadRowsLazilyAndReleaseResourcesOnClose() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 2);
+        when(resultSet.getString("name")).thenReturn("Naruto", "Naruto Shippuden");
+
+        try (Stream<Anime> animes = animeRepository.streamByName("Naruto")) {
+            verify(resultSet, never()).next();
+            assertEquals(List.of("Naruto", "Naruto Shippuden"), animes.map(Anime::getName).toList());
+        }
+
+        verify(preparedStatement).setFetchSize(Integer.MIN_VALUE);
+        verify(preparedStatement).setString(1, "%Naruto%");
+        verify(resultSet).close();
+        verify(preparedStatement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    void findByNameFuzzy_BeforeWarmUp_ShouldCompareEveryNameFromTheTable() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement cursorStatement = mock(PreparedStatement.class);
+        ResultSet names = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(cursorStatement);
+        when(cursorStatement.executeQuery()).thenReturn(names);
+        when(names.next()).thenReturn(true, true, true, false);
+        when(names.getString("name")).thenReturn("Naruto", "Bleach", "Boruto");
+        when(names.getInt("id")).thenReturn(1, 3);
+
+        List<FuzzyMatch> matches = animeRepository.findByNameFuzzy("Narutto", 3, 10);
+
+        assertEquals(List.of(new FuzzyMatch(1, "Naruto", 1), new FuzzyMatch(3, "Boruto", 3)), matches);
+        verify(connection).prepareStatement(eq("select id, name FROM anime_store.anime;"), anyInt(), anyInt());
+    }
+
+    @Test
+    void findByName_WhenNameIndexIsWarm_ShouldFetchOnlyMatchingIds() throws SQLException {
+        Connection connection = warmUp(List.of(anime(1, "Naruto", 220, 7), anime(2, "Bleach", 366, 8), anime(3, "Boruto", 293, 7)));
+
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 3);
+
+        List<Anime> result = animeRepository.findByName("uto");
+
+        assertEquals(2, result.size());
+        verify(connection).prepareStatement(contains("where a.id in (?, ?)"));
+        verify(preparedStatement).setInt(1, 1);
+        verify(preparedStatement).setInt(2, 3);
+        verify(preparedStatement, never()).setString(anyInt(), anyString());
+    }
+
+    @Test
+    void findByProducerId_WhenProducerIndexIsWarm_ShouldFetchTheIndexedIds() throws SQLException {
+        Connection connection = warmUp(List.of(anime(1, "Naruto", 220, 7), anime(2, "Bleach", 366, 8), anime(3, "Boruto", 293, 7)));
+
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 3);
+
+        List<Anime> animes = animeRepository.findByProducerId(7);
+
+        assertEquals(List.of(1, 3), animes.stream().map(Anime::getId).toList());
+        verify(connection).prepareStatement(contains("where a.id in (?, ?)"));
+        verify(connection, never()).prepareStatement(contains("producer_id = ?"));
+        assertEquals(Map.of(7, 2, 8, 1), animeRepository.countByProducer());
+    }
+
+    @Test
+    void findByProducerId_BeforeWarmUp_ShouldFilterOnTheProducerColumn() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+
+        assertTrue(animeRepository.findByProducerId(7).isEmpty());
+
+        verify(connection).prepareStatement(contains("where a.producer_id = ?"));
+        verify(preparedStatement).setInt(1, 7);
+    }
+
+    @Test
+    void findLongest_WhenEpisodeIndexIsWarm_ShouldKeepTheIndexOrder() throws SQLException {
+        Connection connection = warmUp(List.of(anime(1, "Naruto", 220, 7), anime(2, "Bleach", 366, 8), anime(3, "One Piece", 1100, 9)));
+
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(2, 3);
+
+        List<Anime> longest = animeRepository.findLongest(2);
+
+        assertEquals(List.of(3, 2), longest.stream().map(Anime::getId).toList());
+        verify(connection).prepareStatement(contains("where a.id in (?, ?)"));
+        verify(preparedStatement).setInt(1, 2);
+        verify(preparedStatement).setInt(2, 3);
+    }
+
+    @Test
+    void findByEpisodes_BeforeWarmUp_ShouldQueryTheEpisodeRange() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+
+        animeRepository.findByEpisodes(100, 500);
+
+        verify(connection).prepareStatement(contains("where a.episodes >= ? and a.episodes <= ?\norder by a.episodes, a.id"));
+        verify(preparedStatement).setInt(1, 100);
+        verify(preparedStatement).setInt(2, 500);
+    }
+
+    @Test
+    void findIdsByName_ShouldSelectOnlyIdsAndCountWithoutRows() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false, true);
+        when(resultSet.getInt(1)).thenReturn(2, 9);
+        when(resultSet.getLong(1)).thenReturn(2L);
+
+        assertArrayEquals(new int[]{2, 9}, animeRepository.findIdsByName("uto"));
+        assertEquals(2, animeRepository.countByName("uto"));
+
+        verify(connection).prepareStatement("SELECT id FROM anime_store.anime where name like ? order by id;");
+        verify(connection).prepareStatement("SELECT count(*) FROM anime_store.anime where name like ?;");
+        verify(preparedStatement, times(2)).setString(1, "%uto%");
+    }
+
+    @Test
+    void countByName_WhenNameIndexIsWarm_ShouldNotQuery() throws SQLException {
+        Connection connection = warmUp(List.of(anime(1, "Naruto", 220, 7), anime(2, "Bleach", 366, 8), anime(3, "Boruto", 293, 7)));
+
+        assertEquals(2, animeRepository.countByName("uto"));
+        assertArrayEquals(new int[]{1, 3}, animeRepository.findIdsByName("uto"));
+        verify(connection, never()).prepareStatement(anyString());
+    }
+
+    @Test
+    void importAll_ShouldLeaveTheIndexesToFinishImport() throws SQLException {
+        Connection connection = warmUp(List.of(anime(1, "Naruto", 220, 7)));
+        PreparedStatement insert = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(insert);
+        when(insert.executeBatch()).thenReturn(new int[]{1});
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true, false);
+        when(keys.getInt(1)).thenReturn(2);
+
+        animeRepository.importAll(List.of(anime(0, "Boruto", 293, 7)), 10);
+
+        assertArrayEquals(new int[]{1}, animeRepository.findIdsByName("uto"));
+        mockTable(List.of(anime(1, "Naruto", 220, 7), anime(2, "Boruto", 293, 7)));
+        animeRepository.finishImport();
+        assertArrayEquals(new int[]{1, 2}, animeRepository.findIdsByName("uto"));
+    }
+
+    @Test
+    void update_WhenIdMatchesNoRow_ShouldNotReachTheWarmIndexes() throws SQLException {
+        Connection connection = warmUp(List.of(anime(1, "Naruto", 220, 7), anime(2, "Bleach", 366, 8)));
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+
+        animeRepository.update(anime(9, "Boruto", 1100, 7));
+
+        assertArrayEquals(new int[]{1}, animeRepository.findIdsByName("uto"));
+        assertEquals(Map.of(7, 1, 8, 1), animeRepository.countByProducer());
+        verify(connection, never()).prepareStatement(contains("where a.id in"));
+    }
+
+    @Test
+    void findSummariesByName_ShouldReadIdAndNameWithoutTheJoin() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getString(2)).thenReturn("Naruto");
+
+        assertEquals(List.of(new AnimeSummary(1, "Naruto")), animeRepository.findSummariesByName("Naru"));
+        verify(connection).prepareStatement("SELECT id, name FROM anime_store.anime where name like ? order by id;");
+    }
+
+    @Test
+    void findByName_WhenCalledConcurrently_ShouldIssueOneQuery() throws Exception {
+        int callers = 6;
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenAnswer(invocation -> {
+            // hold the query until every other caller is waiting on it
+            while (animeRepository.getNameSearchStats().getCoalesced() < callers - 1) {
+                Thread.onSpinWait();
+            }
+            return resultSet;
+        });
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt("id")).thenReturn(1);
+        when(resultSet.getString("name")).thenReturn("Naruto");
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<List<Anime>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> animeRepository.findByName("Naruto")));
+            }
+            for (Future<List<Anime>> result : results) {
+                assertSame(results.get(0).get(), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(connection, times(1)).prepareStatement(anyString());
+        assertThrows(UnsupportedOperationException.class, () -> animeRepository.findByName("Naruto").clear());
+    }
+
+    @Test
+    void findByName_WhenTermIsCached_ShouldSkipTheSearchUntilAMatchingSave() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false, true, false);
+        when(resultSet.getInt("id")).thenReturn(1);
+        when(resultSet.getString("name")).thenReturn("Naruto");
+        animeRepository.findByName("Naruto");
+        animeRepository.findById(1);
+
+        List<Anime> cached = animeRepository.findByName("naruto");
+
+        assertEquals(1, cached.size());
+        assertEquals(1, animeRepository.getNameResultStats().getHits());
+        verify(connection, times(1)).prepareStatement(contains("a.name like ?"));
+
+        PreparedStatement insert = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(insert);
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(2);
+        animeRepository.save(Anime.builder().name("Naruto Shippuden").episodes(500).producer(Producer.builder().id(1).build()).build());
+
+        animeRepository.findByName("naruto");
+
+        verify(connection, times(2)).prepareStatement(contains("a.name like ?"));
+    }
+
+    @Test
+    void findByName_WhenProducerCatalogIsLoaded_ShouldSkipJoinAndShareProducers() throws SQLException {
+        ProducerCatalog producerCatalog = new ProducerCatalog(connectionFactory);
+        producerCatalog.load(Map.of(7, "Studio Pierrot"));
+        AnimeRepository animeRepository = new AnimeRepository(connectionFactory, producerCatalog);
+
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 2);
+        when(resultSet.getInt("producer_id")).thenReturn(7);
+
+        List<Anime> result = animeRepository.findByName("Naruto");
+
+        verify(connection).prepareStatement(argThat(sql -> !sql.contains("join")));
+        verify(resultSet, never()).getString("producer_name");
+        assertEquals("Studio Pierrot", result.get(0).getProducer().getName());
+        assertSame(result.get(0).getProducer(), result.get(1).getProducer());
+    }
+
+    @Test
+    void findByName_WhenProducersAreMissingFromTheCatalog_ShouldLoadThemWithOneQueryAfterTheRows() throws SQLException {
+        ProducerCatalog producerCatalog = new ProducerCatalog(connectionFactory);
+        producerCatalog.load(Map.of(7, "Studio Pierrot"));
+        AnimeRepository animeRepository = new AnimeRepository(connectionFactory, producerCatalog);
+
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        PreparedStatement producerStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSet producerResultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(contains("anime_store.producer where id in"))).thenReturn(producerStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(producerStatement.executeQuery()).thenReturn(producerResultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 2, 3);
+        when(resultSet.getInt("producer_id")).thenReturn(8, 9, 8);
+        when(producerResultSet.next()).thenReturn(true, true, false);
+        when(producerResultSet.getInt("id")).thenReturn(8, 9);
+        when(producerResultSet.getString("name")).thenReturn("Bones", "MAPPA");
+
+        List<Anime> result = animeRepository.findByName("Naruto");
+
+        InOrder inOrder = inOrder(resultSet, connection);
+        inOrder.verify(resultSet).close();
+        inOrder.verify(connection).prepareStatement(contains("anime_store.producer where id in (?, ?)"));
+        verify(producerStatement, times(1)).executeQuery();
+        assertEquals(List.of("Bones", "MAPPA", "Bones"), result.stream().map(anime -> anime.getProducer().getName()).toList());
+        assertEquals(3, producerCatalog.size());
+    }
+
     //----------------------------------------------------------------------------------------------------------
 
     @Test
@@ -126,18 +544,25 @@ class AnimeRepositoryTest {
         when(connectionFactory.getConnection()).thenReturn(connection);
 
         PreparedStatement preparedStatement = mock(PreparedStatement.class);
-        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+        ResultSet generatedKeys = mock(ResultSet.class);
+        when(generatedKeys.next()).thenReturn(true);
+        when(generatedKeys.getInt(1)).thenReturn(42);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(generatedKeys);
 
         AnimeRepository animeRepository = new AnimeRepository(connectionFactory);
 
-        animeRepository.save(anime);
+        Optional<Anime> saved = animeRepository.save(anime);
 
         verify(connectionFactory, times(1)).getConnection();
-        verify(connection, times(1)).prepareStatement("INSERT INTO `anime_store`.`anime`  (`name`,`episodes`,`producer_id`) VALUES (?, ?, ?);");
+        verify(connection, times(1)).prepareStatement("INSERT INTO `anime_store`.`anime`  (`name`,`episodes`,`producer_id`) VALUES (?, ?, ?);", Statement.RETURN_GENERATED_KEYS);
         verify(preparedStatement, times(1)).setString(1, "Example Anime");
         verify(preparedStatement, times(1)).setInt(2, 12);
         verify(preparedStatement, times(1)).setInt(3, 1);
         verify(preparedStatement, times(1)).execute();
+        assertTrue(saved.isPresent());
+        assertEquals(42, saved.get().getId());
+        assertEquals("Example Anime", saved.get().getName());
     }
 
     @Test
@@ -154,22 +579,335 @@ class AnimeRepositoryTest {
         when(connectionFactory.getConnection()).thenReturn(connection);
 
         PreparedStatement preparedStatement = mock(PreparedStatement.class);
-        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+        ResultSet generatedKeys = mock(ResultSet.class);
+        when(generatedKeys.next()).thenReturn(true);
+        when(generatedKeys.getInt(1)).thenReturn(42);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(generatedKeys);
 
         AnimeRepository animeRepository = new AnimeRepository(connectionFactory);
 
-        animeRepository.save(anime);
+        Optional<Anime> saved = animeRepository.save(anime);
 
         verify(connectionFactory, times(1)).getConnection();
-        verify(connection, times(1)).prepareStatement("INSERT INTO `anime_store`.`anime`  (`name`,`episodes`,`producer_id`) VALUES (?, ?, ?);");
+        verify(connection, times(1)).prepareStatement("INSERT INTO `anime_store`.`anime`  (`name`,`episodes`,`producer_id`) VALUES (?, ?, ?);", Statement.RETURN_GENERATED_KEYS);
         verify(preparedStatement, times(1)).setString(1, "Example Anime");
         verify(preparedStatement, times(1)).setInt(2, 12);
         verify(preparedStatement, times(1)).setInt(3, 1);
         verify(preparedStatement, times(1)).execute();
     }
 
+    @Test
+    void saveAll_ShouldBatchInsertsAndCommitOncePerChunk() throws SQLException {
+        List<Anime> animes = List.of(
+                Anime.builder().name("Anime 1").episodes(12).producer(Producer.builder().id(1).build()).build(),
+                Anime.builder().name("Anime 2").episodes(24).producer(Producer.builder().id(1).build()).build(),
+                Anime.builder().name("Anime 3").episodes(36).producer(Producer.builder().id(2).build()).build());
+
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+        ResultSet firstChunkKeys = mock(ResultSet.class);
+        when(firstChunkKeys.next()).thenReturn(true, true, false);
+        when(firstChunkKeys.getInt(1)).thenReturn(10, 11);
+        ResultSet secondChunkKeys = mock(ResultSet.class);
+        when(secondChunkKeys.next()).thenReturn(true, false);
+        when(secondChunkKeys.getInt(1)).thenReturn(12);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(firstChunkKeys, secondChunkKeys);
+
+        AnimeRepository animeRepository = new AnimeRepository(connectionFactory);
+
+        BatchResult<Anime> result = animeRepository.saveAll(animes, 2);
+
+        verify(connectionFactory, times(1)).getConnection();
+        verify(connection).setAutoCommit(false);
+        verify(preparedStatement, times(3)).addBatch();
+        verify(preparedStatement, times(2)).executeBatch();
+        verify(connection, times(2)).commit();
+        assertEquals(3, result.getSuccessCount());
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(List.of(10, 11, 12), result.getItems().stream().map(item -> item.getEntity().getId()).toList());
+        assertEquals("Anime 3", result.getItems().get(2).getEntity().getName());
+    }
+
+    @Test
+    void saveAll_WhenChunkFails_ShouldReportEachAnimeIndividually() throws SQLException {
+        Anime valid = Anime.builder().name("Valid").episodes(12).producer(Producer.builder().id(1).build()).build();
+        Anime invalid = Anime.builder().name("Invalid").episodes(12).producer(Producer.builder().id(99).build()).build();
+
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+        when(preparedStatement.executeBatch()).thenThrow(new SQLException("foreign key"));
+        ResultSet generatedKeys = mock(ResultSet.class);
+        when(generatedKeys.next()).thenReturn(true);
+        when(generatedKeys.getInt(1)).thenReturn(7);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(generatedKeys);
+        when(preparedStatement.executeUpdate()).thenReturn(1).thenThrow(new SQLException("foreign key"));
+
+        AnimeRepository animeRepository = new AnimeRepository(connectionFactory);
+
+        BatchResult<Anime> result = animeRepository.saveAll(List.of(valid, invalid));
+
+        verify(connection, times(2)).rollback();
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(invalid, result.getFailures().get(0).getEntity());
+        assertEquals(7, result.getItems().get(0).getEntity().getId());
+    }
+
+    @Test
+    void deleteAll_ShouldDeleteOneInListPerChunkAndCommitEachChunk() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement fullChunk = mock(PreparedStatement.class);
+        PreparedStatement lastChunk = mock(PreparedStatement.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(fullChunk, lastChunk);
+        when(fullChunk.executeUpdate()).thenReturn(2).thenThrow(new SQLException("lock wait timeout"));
+        when(lastChunk.executeUpdate()).thenReturn(1);
+
+        int deleted = animeRepository.deleteAll(List.of(5, 1, 2, 3, 4, 1), 2);
+
+        assertEquals(3, deleted);
+        verify(connection).prepareStatement("DELETE FROM `anime_store`.`anime` WHERE `id` in (?, ?);");
+        verify(connection).prepareStatement("DELETE FROM `anime_store`.`anime` WHERE `id` in (?);");
+        verify(connection, times(2)).commit();
+        verify(connection).rollback();
+        verify(lastChunk).setInt(1, 5);
+        verify(connection).setAutoCommit(false);
+        verify(connectionFactory, times(1)).getConnection();
+    }
+
+    @Test
+    void updateAll_ShouldBatchUpdatesAndReportAffectedRows() throws SQLException {
+        Producer producer = Producer.builder().id(1).build();
+        List<Anime> animes = List.of(
+                Anime.builder().id(1).name("Naruto").episodes(220).producer(producer).build(),
+                Anime.builder().id(2).name("Bleach").episodes(366).producer(producer).build(),
+                Anime.builder().id(99).name("Missing").episodes(1).producer(producer).build());
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1, 1}, new int[]{0});
+
+        BatchResult<Anime> result = animeRepository.updateAll(animes, 2);
+
+        verify(connection).prepareStatement(contains("UPDATE `anime_store`.`anime` SET"));
+        verify(preparedStatement, times(3)).addBatch();
+        verify(connection, times(2)).commit();
+        assertEquals(3, result.getSuccessCount());
+        assertEquals(2, result.getAffectedRows());
+        assertEquals(0, result.getItems().get(2).getAffectedRows());
+    }
+
+    //-----------------------------------------------------------------------------------------------------------------------------------------
+
+    @Test
+    void upsertAll_ShouldOnlyWriteNewAndChangedRows() throws SQLException {
+        Producer producer = Producer.builder().id(1).build();
+        List<Anime> animes = List.of(
+                Anime.builder().id(1).name("Naruto").episodes(220).producer(producer).build(),
+                Anime.builder().id(2).name("Bleach").episodes(366).producer(producer).build(),
+                Anime.builder().id(3).name("Monster").episodes(74).producer(producer).build());
+        Connection connection = mock(Connection.class);
+        PreparedStatement select = mock(PreparedStatement.class);
+        PreparedStatement upsert = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(contains("FOR UPDATE"))).thenReturn(select);
+        when(connection.prepareStatement(contains("ON DUPLICATE KEY UPDATE"))).thenReturn(upsert);
+        when(select.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 2);
+        when(resultSet.getString("name")).thenReturn("Naruto", "Bleach");
+        when(resultSet.getInt("episodes")).thenReturn(220, 300);
+        when(resultSet.getInt("producer_id")).thenReturn(1, 1);
+
+        UpsertResult result = animeRepository.upsertAll(animes, 10);
+
+        verify(upsert, times(2)).addBatch();
+        verify(upsert, never()).setInt(1, 1);
+        verify(upsert).setInt(1, 2);
+        verify(upsert).setInt(1, 3);
+        verify(connection).commit();
+        assertEquals(List.of(new UpsertResult.Chunk(1, 1, 1, 0)), result.getChunks());
+    }
+
+    @Test
+    void update_WithWriteBehind_ShouldBufferAndFlushTheLastValueOnDisable() throws SQLException {
+        Producer producer = Producer.builder().id(1).build();
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt("id")).thenReturn(1);
+        when(resultSet.getString("name")).thenReturn("Naruto");
+        when(resultSet.getInt("episodes")).thenReturn(12);
+        when(resultSet.getInt("producer_id")).thenReturn(1);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
+        animeRepository.enableWriteBehind(WriteBehindConfig.builder().flushIntervalMillis(60_000).flushOnShutdown(false).build());
+
+        animeRepository.update(Anime.builder().id(1).name("Naruto").episodes(13).producer(producer).build());
+        animeRepository.update(Anime.builder().id(1).name("Naruto").episodes(14).producer(producer).build());
+
+        verify(connectionFactory, never()).getConnection();
+        assertEquals(14, animeRepository.findById(1).orElseThrow().getEpisodes());
+        assertEquals(1, animeRepository.getWriteBehindStats().orElseThrow().getCoalesced());
+
+        animeRepository.disableWriteBehind();
+
+        verify(connection).prepareStatement(contains("UPDATE `anime_store`.`anime` SET"));
+        verify(preparedStatement).setInt(2, 14);
+        verify(preparedStatement, times(1)).addBatch();
+        assertTrue(animeRepository.getWriteBehindStats().isEmpty());
+    }
+
+    @Test
+    void updateAll_WithWriteBehind_ShouldFlushTheBufferedValueBeforeTheNewOne() throws SQLException {
+        Producer producer = Producer.builder().id(1).build();
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeBatch()).thenReturn(new int[]{1});
+        animeRepository.enableWriteBehind(WriteBehindConfig.builder().flushIntervalMillis(60_000).flushOnShutdown(false).build());
+        animeRepository.update(Anime.builder().id(1).name("Naruto").episodes(13).producer(producer).build());
+
+        animeRepository.updateAll(List.of(Anime.builder().id(1).name("Naruto").episodes(14).producer(producer).build()));
+
+        InOrder inOrder = inOrder(preparedStatement);
+        inOrder.verify(preparedStatement).setInt(2, 13);
+        inOrder.verify(preparedStatement).setInt(2, 14);
+        assertEquals(0, animeRepository.getWriteBehindStats().orElseThrow().getQueueDepth());
+        animeRepository.disableWriteBehind();
+        verify(preparedStatement, times(2)).executeBatch();
+    }
+
+    @Test
+    void upsertAll_WithWriteBehind_ShouldFlushTheBufferedValueBeforeTheUpsert() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement update = mock(PreparedStatement.class);
+        PreparedStatement select = mock(PreparedStatement.class);
+        PreparedStatement upsert = mock(PreparedStatement.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(contains("UPDATE `anime_store`.`anime` SET"))).thenReturn(update);
+        when(connection.prepareStatement(contains("FOR UPDATE"))).thenReturn(select);
+        when(connection.prepareStatement(contains("ON DUPLICATE KEY UPDATE"))).thenReturn(upsert);
+        when(update.executeBatch()).thenReturn(new int[]{1});
+        when(select.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(upsert.executeBatch()).thenReturn(new int[]{2});
+        animeRepository.enableWriteBehind(WriteBehindConfig.builder().flushIntervalMillis(60_000).flushOnShutdown(false).build());
+        animeRepository.update(anime(1, "Naruto", 13, 1));
+
+        animeRepository.upsertAll(List.of(anime(1, "Naruto", 14, 1)));
+        animeRepository.disableWriteBehind();
+
+        InOrder inOrder = inOrder(update, upsert);
+        inOrder.verify(update).setInt(2, 13);
+        inOrder.verify(upsert).setInt(3, 14);
+        verify(update, times(1)).executeBatch();
+        verify(update, never()).setInt(2, 14);
+    }
+
+    @Test
+    void findById_InsideUnitOfWork_ShouldReadTheUnitsOwnUpdate() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt("id")).thenReturn(1);
+        when(resultSet.getString("name")).thenReturn("Naruto");
+        when(resultSet.getInt("episodes")).thenReturn(220, 221);
+        when(resultSet.getInt("producer_id")).thenReturn(1);
+        ConnectionFactory unitFactory = new ConnectionFactory() {
+            @Override
+            protected Connection openConnection() {
+                return connection;
+            }
+        };
+        AnimeRepository repository = new AnimeRepository(unitFactory);
+        assertEquals(220, repository.findById(1).orElseThrow().getEpisodes());
+
+        try (UnitOfWork work = UnitOfWork.begin(unitFactory)) {
+            repository.update(anime(1, "Naruto", 221, 1));
+
+            assertEquals(221, repository.findById(1).orElseThrow().getEpisodes());
+            work.rollback();
+        }
+        verify(preparedStatement, times(2)).executeQuery();
+    }
+
+    @Test
+    void upsertAll_WithoutId_ShouldThrowIllegalArgumentException() {
+        List<Anime> animes = List.of(Anime.builder().name("Naruto").episodes(220).producer(Producer.builder().id(1).build()).build());
+
+        assertThrows(IllegalArgumentException.class, () -> animeRepository.upsertAll(animes));
+    }
+
     //-----------------------------------------------------------------------------------------------------------------------------------------
 
+    @Test
+    void findAll_WithCriteriaOfTheSameShape_ShouldReuseTheGeneratedSql() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false, false);
+        when(resultSet.getInt("id")).thenReturn(7);
+        when(resultSet.getString("name")).thenReturn("Naruto");
+        when(resultSet.getInt("episodes")).thenReturn(220);
+
+        List<Anime> naruto = animeRepository.findAll(AnimeCriteria.builder().name("Naru").producerId(1).limit(5).build());
+        animeRepository.findAll(AnimeCriteria.builder().name("Blea").producerId(2).limit(5).build());
+
+        assertEquals(List.of(7), naruto.stream().map(Anime::getId).toList());
+        verify(connection, times(2)).prepareStatement(contains("where a.name like ? and a.producer_id = ?"));
+        verify(preparedStatement).setString(1, "%Naru%");
+        verify(preparedStatement).setInt(2, 2);
+        assertEquals(1, animeRepository.criteriaSql.size());
+        assertThrows(IllegalArgumentException.class, () -> animeRepository.findAll(AnimeCriteria.builder().limit(0).build()));
+    }
+
+    @Test
+    void statsByProducer_ShouldGroupInSqlWithTheCriteriaFilters() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt("producer_id")).thenReturn(1);
+        when(resultSet.getString("producer_name")).thenReturn("Studio Pierrot");
+        when(resultSet.getLong("animes")).thenReturn(2L);
+        when(resultSet.getLong("total_episodes")).thenReturn(720L);
+        when(resultSet.getDouble("average_episodes")).thenReturn(360.0);
+        when(resultSet.getInt("max_episodes")).thenReturn(500);
+
+        List<ProducerStats> stats = animeRepository.statsByProducer(AnimeCriteria.builder().minEpisodes(100).limit(5).build());
+
+        verify(connection).prepareStatement(contains("where a.episodes >= ?\ngroup by a.producer_id"));
+        verify(preparedStatement).setInt(1, 100);
+        verify(preparedStatement, never()).setInt(2, 5);
+        assertEquals(List.of(ProducerStats.builder().producerId(1).producerName("Studio Pierrot").animes(2)
+                .totalEpisodes(720).averageEpisodes(360.0).maxEpisodes(500).build()), stats);
+    }
+
     @Test
     void findById_WhenAnimeExists_ShouldReturnOptionalWithAnime() throws SQLException {
         Integer animeId = 1;
@@ -196,6 +934,7 @@ class AnimeRepositoryTest {
         Optional<Anime> foundAnime = animeRepository.findById(animeId);
 
         verify(connectionFactory, times(1)).getConnection();
+        verify(connection).prepareStatement(contains("where a.id = ?"));
         verify(preparedStatement, times(1)).setInt(1, animeId);
         verify(preparedStatement, times(1)).executeQuery();
 
@@ -234,6 +973,40 @@ class AnimeRepositoryTest {
         assertTrue(foundAnime.isEmpty());
     }
 
+    @Test
+    void findById_ShouldServeRepeatedLookupsFromCacheUntilUpdated() throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt("id")).thenReturn(1);
+        when(resultSet.getString("name")).thenReturn("Example Anime");
+        when(resultSet.getInt("episodes")).thenReturn(12);
+        when(resultSet.getInt("producer_id")).thenReturn(1);
+        when(resultSet.getString("producer_name")).thenReturn("Example Producer");
+
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+
+        AnimeRepository animeRepository = new AnimeRepository(connectionFactory);
+
+        Anime first = animeRepository.findById(1).orElseThrow();
+        Anime second = animeRepository.findById(1).orElseThrow();
+
+        assertSame(first, second);
+        verify(preparedStatement, times(1)).executeQuery();
+        assertEquals(1, animeRepository.getIdCacheStats().getHits());
+        assertEquals(1, animeRepository.getIdCacheStats().getMisses());
+
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        animeRepository.update(first.toBuilder().name("Renamed Anime").build());
+        animeRepository.findById(1);
+
+        verify(preparedStatement, times(2)).executeQuery();
+    }
+
     //-----------------------------------------------------------------------------------------------------------------------------------------
 
     @Test
@@ -260,7 +1033,7 @@ class AnimeRepositoryTest {
         verify(preparedStatement, times(1)).setString(1, "Updated Anime");
         verify(preparedStatement, times(1)).setInt(2, 24);
         verify(preparedStatement, times(1)).setInt(3, 1);
-        verify(preparedStatement, times(1)).execute();
+        verify(preparedStatement, times(1)).executeUpdate();
     }
 
     @Test
@@ -288,6 +1061,40 @@ class AnimeRepositoryTest {
         verify(preparedStatement, times(1)).setString(1, "Updated Anime");
         verify(preparedStatement, times(1)).setInt(2, 24);
         verify(preparedStatement, times(1)).setInt(3, 1);
-        verify(preparedStatement, times(1)).execute();
+        verify(preparedStatement, times(1)).executeUpdate();
+    }
+
+    //-----------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Warms the in-memory indexes up from the given rows and returns the connection the repository now gets
+     */
+    private Connection warmUp(List<Anime> animes) throws SQLException {
+        Connection connection = mockTable(animes);
+        animeRepository.warmUp();
+        return connection;
+    }
+
+    /**
+     * Streams the given rows to the next warm-up
+     */
+    private Connection mockTable(List<Anime> animes) throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement cursorStatement = mock(PreparedStatement.class);
+        ResultSet rows = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(cursorStatement);
+        when(cursorStatement.executeQuery()).thenReturn(rows);
+        int[] row = {-1};
+        when(rows.next()).thenAnswer(invocation -> ++row[0] < animes.size());
+        when(rows.getInt("id")).thenAnswer(invocation -> animes.get(row[0]).getId());
+        when(rows.getString("name")).thenAnswer(invocation -> animes.get(row[0]).getName());
+        when(rows.getInt("episodes")).thenAnswer(invocation -> animes.get(row[0]).getEpisodes());
+        when(rows.getInt("producer_id")).thenAnswer(invocation -> animes.get(row[0]).getProducer().getId());
+        return connection;
+    }
+
+    private static Anime anime(int id, String name, int episodes, int producerId) {
+        return Anime.builder().id(id).name(name).episodes(episodes).producer(Producer.builder().id(producerId).build()).build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package anhembi.crud.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+
+    private final List<Set<Integer>> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private MultiGetResult<String> load(Collection<Integer> ids) {
+        calls.add(Set.copyOf(ids));
+        int[] sortedIds = ids.stream().mapToInt(Integer::intValue).sorted().toArray();
+        return MultiGetResult.of(sortedIds, Map.of(1, "Naruto", 2, "Bleach"));
+    }
+
+    @Test
+    void load_WithinWindow_ShouldSendOneDeduplicatedQuery() {
+        BatchLoaderConfig config = BatchLoaderConfig.builder().windowMicros(TimeUnit.MILLISECONDS.toMicros(200)).build();
+        try (BatchLoader<String> loader = new BatchLoader<>(this::load, config)) {
+            CompletableFuture<Optional<String>> first = loader.load(1);
+            CompletableFuture<Optional<String>> second = loader.load(2);
+            CompletableFuture<Optional<String>> again = loader.load(1);
+            CompletableFuture<Optional<String>> missing = loader.load(3);
+
+            assertEquals(Optional.of("Naruto"), first.join());
+            assertEquals(Optional.of("Bleach"), second.join());
+            assertEquals(Optional.of("Naruto"), again.join());
+            assertEquals(Optional.empty(), missing.join());
+            assertEquals(List.of(Set.of(1, 2, 3)), calls);
+
+            BatchLoaderStats stats = loader.getStats();
+            assertEquals(4, stats.getRequests());
+            assertEquals(1, stats.getBatches());
+            assertEquals(1, stats.getDeduplicated());
+            assertEquals(4, stats.getMaxBatchSize());
+        }
+    }
+
+    @Test
+    void load_WhenBatchIsFull_ShouldNotWaitForTheWindow() {
+        BatchLoaderConfig config = BatchLoaderConfig.builder()
+                .windowMicros(TimeUnit.SECONDS.toMicros(30))
+                .maxBatchSize(2)
+                .build();
+        try (BatchLoader<String> loader = new BatchLoader<>(this::load, config)) {
+            CompletableFuture<Optional<String>> first = loader.load(1);
+            CompletableFuture<Optional<String>> second = loader.load(2);
+
+            assertEquals(Optional.of("Naruto"), first.orTimeout(5, TimeUnit.SECONDS).join());
+            assertEquals(Optional.of("Bleach"), second.orTimeout(5, TimeUnit.SECONDS).join());
+            assertEquals(1, calls.size());
+        }
+    }
+
+    @Test
+    void load_WhenLoaderFails_ShouldFailEveryCallerInTheBatch() {
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            throw new IllegalStateException("Connection refused");
+        }, BatchLoaderConfig.builder().build());
+
+        CompletableFuture<Optional<String>> first = loader.load(1);
+        CompletableFuture<Optional<String>> second = loader.load(2);
+        loader.close();
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+        assertThrows(IllegalStateException.class, () -> loader.load(3));
+    }
+
+    @Test
+    void load_WhenLoaderThrowsAnError_ShouldStillFailTheCallers() {
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            throw new OutOfMemoryError("Java heap space");
+        }, BatchLoaderConfig.builder().build());
+
+        CompletableFuture<Optional<String>> future = loader.load(1);
+        loader.close();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OutOfMemoryError.class, e.getCause());
+    }
+
+    @Test
+    void load_WhenAnIdIsUnresolved_ShouldFailItsCallersInsteadOfReportingItMissing() {
+        BatchLoader<String> loader = new BatchLoader<>(ids -> MultiGetResult.of(new int[]{1, 2}, Map.of(1, "Naruto"), Set.of(2)),
+                BatchLoaderConfig.builder().build());
+
+        CompletableFuture<Optional<String>> found = loader.load(1);
+        CompletableFuture<Optional<String>> failed = loader.load(2);
+        loader.close();
+
+        assertEquals(Optional.of("Naruto"), found.join());
+        assertThrows(CompletionException.class, failed::join);
+    }
+}
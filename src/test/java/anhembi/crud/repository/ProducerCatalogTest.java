@@ -0,0 +1,131 @@
+package anhembi.crud.repository;
+
+import anhembi.crud.conn.ConnectionFactory;
+import anhembi.crud.conn.UnitOfWork;
+import anhembi.crud.domain.Producer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ProducerCatalogTest {
+
+    private ConnectionFactory connectionFactory;
+    private ProducerCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = mock(ConnectionFactory.class);
+        catalog = new ProducerCatalog(connectionFactory);
+    }
+
+    @Test
+    void resolve_WhenNotLoaded_ShouldReturnNullWithoutQuerying() throws SQLException {
+        assertFalse(catalog.isReady());
+        assertNull(catalog.resolve(1));
+        verify(connectionFactory, never()).getConnection();
+    }
+
+    @Test
+    void resolve_ShouldReturnTheSameInstanceForAnId() throws SQLException {
+        catalog.load(Map.of(1, "MAPPA", 2, "Madhouse"));
+
+        Producer first = catalog.resolve(1);
+
+        assertEquals("MAPPA", first.getName());
+        assertSame(first, catalog.resolve(1));
+        assertEquals(2, catalog.size());
+        verify(connectionFactory, never()).getConnection();
+    }
+
+    @Test
+    void resolve_WhenProducerWasAddedElsewhere_ShouldLoadItOnce() throws SQLException {
+        catalog.load(Map.of(1, "MAPPA"));
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt("id")).thenReturn(5);
+        when(resultSet.getString("name")).thenReturn("Bones");
+
+        assertEquals("Bones", catalog.resolve(5).getName());
+        assertEquals("Bones", catalog.resolve(5).getName());
+
+        verify(preparedStatement, times(1)).setInt(1, 5);
+        verify(preparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void resolveAll_ShouldLoadTheMissingProducersWithOneInList() throws SQLException {
+        catalog.load(Map.of(1, "MAPPA"));
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(5, 6);
+        when(resultSet.getString("name")).thenReturn("Bones", "Madhouse");
+
+        Map<Integer, Producer> producers = catalog.resolveAll(List.of(6, 1, 5, 9));
+
+        assertEquals(Map.of(1, "MAPPA", 5, "Bones", 6, "Madhouse"),
+                producers.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getName())));
+        verify(connectionFactory, times(1)).getConnection();
+        verify(connection).prepareStatement("select * FROM anime_store.producer where id in (?, ?, ?);");
+        assertSame(producers.get(5), catalog.get(5));
+    }
+
+    @Test
+    void putAndRemove_ShouldReplaceSharedInstances() {
+        catalog.load(Map.of(1, "MAPPA"));
+
+        catalog.put(Producer.builder().id(1).name("MAPPA Studio").build());
+        catalog.put(Producer.builder().id(2).name("Bones").build());
+        catalog.remove(2);
+
+        assertEquals("MAPPA Studio", catalog.resolve(1).getName());
+        assertEquals(1, catalog.size());
+    }
+
+    @Test
+    void resolve_InsideUnitOfWork_ShouldNotKeepTheProducer() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt("id")).thenReturn(5);
+        when(resultSet.getString("name")).thenReturn("Bones");
+        ConnectionFactory unitFactory = new ConnectionFactory() {
+            @Override
+            protected Connection openConnection() {
+                return connection;
+            }
+        };
+        ProducerCatalog catalog = new ProducerCatalog(unitFactory);
+        catalog.load(Map.of(1, "MAPPA"));
+
+        try (UnitOfWork work = UnitOfWork.begin(unitFactory)) {
+            assertEquals("Bones", catalog.resolve(5).getName());
+            work.rollback();
+        }
+
+        assertEquals(1, catalog.size());
+    }
+}
@@ -2,6 +2,7 @@ package anhembi.crud.repository;
 
 import anhembi.crud.conn.ConnectionFactory;
 import anhembi.crud.domain.Producer;
+import anhembi.crud.index.Suggestion;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,11 +14,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class ProducerRepositoryTest {
@@ -138,6 +148,25 @@ class ProducerRepositoryTest {
         verify(preparedStatement, times(1)).execute();
     }
 
+    @Test
+    void streamProducersByName_WhenQueryFails_ShouldReturnEmptyStreamAndReleaseConnection() throws SQLException {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenThrow(new SQLException("Table not found"));
+
+        ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
+
+        try (Stream<Producer> producers = producerRepository.streamByName("Studio")) {
+            assertEquals(0, producers.count());
+        }
+        verify(preparedStatement).close();
+        verify(connection).close();
+    }
+
     //--------------------------------------------------------------------------------------------------------------------------
 
     @Test
@@ -152,15 +181,20 @@ class ProducerRepositoryTest {
         when(connectionFactory.getConnection()).thenReturn(connection);
 
         PreparedStatement preparedStatement = mock(PreparedStatement.class);
-        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+        ResultSet generatedKeys = mock(ResultSet.class);
+        when(generatedKeys.next()).thenReturn(true);
+        when(generatedKeys.getInt(1)).thenReturn(5);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(generatedKeys);
 
         ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
 
-        producerRepository.save(producer);
+        Optional<Producer> saved = producerRepository.save(producer);
 
         verify(connectionFactory, times(1)).getConnection();
         verify(preparedStatement, times(1)).setString(1, producer.getName());
         verify(preparedStatement, times(1)).execute();
+        assertEquals(Optional.of(Producer.builder().id(5).name("Example Producer").build()), saved);
     }
 
     @Test
@@ -175,7 +209,8 @@ class ProducerRepositoryTest {
         when(connectionFactory.getConnection()).thenReturn(connection);
 
         PreparedStatement preparedStatement = mock(PreparedStatement.class);
-        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(mock(ResultSet.class));
 
         ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
 
@@ -187,6 +222,54 @@ class ProducerRepositoryTest {
         verify(preparedStatement, times(1)).execute();
     }
 
+    @Test
+    void saveAllProducers_ShouldBatchInsertsAndCommitOncePerChunk() throws SQLException {
+        List<Producer> producers = List.of(
+                Producer.builder().name("Producer 1").build(),
+                Producer.builder().name("Producer 2").build(),
+                Producer.builder().name("Producer 3").build());
+
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(preparedStatement);
+        ResultSet firstChunkKeys = mock(ResultSet.class);
+        when(firstChunkKeys.next()).thenReturn(true, true, false);
+        when(firstChunkKeys.getInt(1)).thenReturn(1, 2);
+        ResultSet secondChunkKeys = mock(ResultSet.class);
+        when(secondChunkKeys.next()).thenReturn(true, false);
+        when(secondChunkKeys.getInt(1)).thenReturn(3);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(firstChunkKeys, secondChunkKeys);
+
+        ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
+
+        BatchResult<Producer> result = producerRepository.saveAll(producers, 2);
+
+        verify(connectionFactory, times(1)).getConnection();
+        verify(preparedStatement, times(3)).addBatch();
+        verify(preparedStatement, times(2)).executeBatch();
+        verify(connection, times(2)).commit();
+        assertEquals(3, result.getSuccessCount());
+        assertEquals(List.of(1, 2, 3), result.getItems().stream().map(item -> item.getEntity().getId()).toList());
+    }
+
+    @Test
+    void saveAllProducers_WhenConnectionFails_ShouldReportEveryProducerAsFailed() throws SQLException {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
+
+        BatchResult<Producer> result = producerRepository.saveAll(List.of(
+                Producer.builder().name("Producer 1").build(),
+                Producer.builder().name("Producer 2").build()));
+
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(2, result.getFailures().size());
+    }
+
     //--------------------------------------------------------------------------------------------------------------------------
 
 
@@ -238,6 +321,42 @@ class ProducerRepositoryTest {
         assertTrue(foundProducer.isEmpty());
     }
 
+    @Test
+    void findByIdProducer_WithIdKnownToBeMissing_ShouldNotQueryUntilItIsSaved() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        PreparedStatement cursorStatement = mock(PreparedStatement.class);
+        ResultSet names = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(cursorStatement);
+        when(cursorStatement.executeQuery()).thenReturn(names);
+        when(names.next()).thenReturn(true, true, false);
+        when(names.getInt("id")).thenReturn(1, 3);
+        when(names.getString("name")).thenReturn("MAPPA", "Bones");
+        producerRepository.warmUp();
+
+        assertTrue(producerRepository.findById(2).isEmpty());
+        verify(connection, never()).prepareStatement(anyString());
+        assertEquals(1, producerRepository.getMissingIdStats().getNegativeHits());
+
+        PreparedStatement insert = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(insert);
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(2);
+        PreparedStatement select = mock(PreparedStatement.class);
+        ResultSet row = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(select);
+        when(select.executeQuery()).thenReturn(row);
+        when(row.next()).thenReturn(true);
+        when(row.getInt("id")).thenReturn(2);
+        when(row.getString("name")).thenReturn("Madhouse");
+
+        producerRepository.save(Producer.builder().name("Madhouse").build());
+
+        assertEquals("Madhouse", producerRepository.findById(2).orElseThrow().getName());
+    }
+
     @Test
     void findByIdProducer_WithSQLException_ShouldReturnEmptyOptional() throws SQLException {
         int producerId = 1;
@@ -259,6 +378,89 @@ class ProducerRepositoryTest {
         });
     }
 
+    @Test
+    void suggest_BeforeWarmUp_ShouldQueryWithTheEscapedPrefix() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getInt("id")).thenReturn(7);
+        when(resultSet.getString("name")).thenReturn("100% Studio");
+
+        List<Suggestion> suggestions = producerRepository.suggest("100%", 5);
+
+        verify(preparedStatement).setString(1, "100\\%%");
+        verify(preparedStatement).setInt(2, 5);
+        assertEquals(List.of(new Suggestion(7, "100% Studio", 0)), suggestions);
+    }
+
+    @Test
+    void findAllByIds_ShouldQueryDistinctIdsOnceAndReportMissingOnes() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("id")).thenReturn(1, 3);
+        when(resultSet.getString("name")).thenReturn("MAPPA", "Bones");
+
+        MultiGetResult<Producer> result = producerRepository.findAllByIds(List.of(3, 1, 1, 2));
+
+        verify(connection).prepareStatement(contains("where id in (?, ?, ?)"));
+        verify(preparedStatement).setInt(1, 1);
+        verify(preparedStatement).setInt(2, 2);
+        verify(preparedStatement).setInt(3, 3);
+        assertEquals(List.of(1, 3), List.copyOf(result.getFound().keySet()));
+        assertEquals(Set.of(2), result.getMissing());
+        assertEquals("Bones", result.get(3).orElseThrow().getName());
+
+        MultiGetResult<Producer> cached = producerRepository.findAllByIds(List.of(1, 3));
+
+        assertEquals(2, cached.getFound().size());
+        verify(preparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    void findAllByIds_WhenTheQueryFails_ShouldReportTheIdsAsUnresolvedNotMissing() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenThrow(new SQLException("Connection reset"));
+
+        MultiGetResult<Producer> result = producerRepository.findAllByIds(List.of(1, 2));
+
+        assertEquals(Set.of(1, 2), result.getUnresolved());
+        assertTrue(result.getMissing().isEmpty());
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    void findAllByIds_WithExecutor_ShouldReadEachChunkOnItsOwnConnection() throws SQLException {
+        when(connectionFactory.getConnection()).thenAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            PreparedStatement preparedStatement = mock(PreparedStatement.class);
+            when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+            when(preparedStatement.executeQuery()).thenReturn(mock(ResultSet.class));
+            return connection;
+        });
+        List<Integer> ids = IntStream.rangeClosed(1, 2_500).boxed().toList();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            MultiGetResult<Producer> result = producerRepository.findAllByIds(ids, executor);
+
+            assertTrue(result.getFound().isEmpty());
+            assertEquals(2_500, result.getMissing().size());
+            verify(connectionFactory, times(3)).getConnection();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     //--------------------------------------------------------------------------------------------------------------------------
 
 
@@ -298,6 +500,24 @@ class ProducerRepositoryTest {
                 "Updating producer should not throw an exception");
     }
 
+    @Test
+    void updateProducer_WhenIdMatchesNoRow_ShouldNotAddItToTheCatalog() throws SQLException {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(0, 1);
+        ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
+        producerRepository.getCatalog().load(Map.of());
+
+        producerRepository.update(Producer.builder().id(9).name("Phantom").build());
+        assertEquals(0, producerRepository.getCatalog().size());
+
+        producerRepository.update(Producer.builder().id(9).name("Real").build());
+        assertEquals(1, producerRepository.getCatalog().size());
+    }
+
     @Test
     void updateProducer_WithSQLExceptionOnExecute_ShouldHandleException() throws SQLException {
         Producer producer = Producer.builder().id(1).name("Updated Producer").build();
@@ -309,7 +529,7 @@ class ProducerRepositoryTest {
         PreparedStatement preparedStatement = mock(PreparedStatement.class);
         when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
 
-        when(preparedStatement.execute()).thenThrow(new SQLException("Simulated SQL Exception"));
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Simulated SQL Exception"));
 
         ProducerRepository producerRepository = new ProducerRepository(connectionFactory);
 
@@ -0,0 +1,152 @@
+package anhembi.crud.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindBufferTest {
+
+    private final List<List<String>> writes = Collections.synchronizedList(new ArrayList<>());
+    private Set<String> rejected = Set.of();
+    private Consumer<String> duringWrite = value -> {
+    };
+
+    private BatchResult<String> write(Collection<String> values, int chunkSize) {
+        writes.add(List.copyOf(values));
+        List<BatchResult.Item<String>> items = new ArrayList<>();
+        for (String value : values) {
+            duringWrite.accept(value);
+            boolean ok = !rejected.contains(value);
+            items.add(new BatchResult.Item<>(value, ok, null, ok ? 1 : 0));
+        }
+        return new BatchResult<>(items);
+    }
+
+    private WriteBehindBuffer<String> buffer(int maxPending) {
+        WriteBehindConfig config = WriteBehindConfig.builder().maxPending(maxPending).flushIntervalMillis(60_000).flushOnShutdown(false).build();
+        // the id is the first character, so "1a" and "1b" are two updates of the same row
+        return new WriteBehindBuffer<>(this::write, value -> value.charAt(0) - '0', config);
+    }
+
+    @Test
+    void put_SameIdTwice_ShouldKeepOnlyTheLastValue() {
+        try (WriteBehindBuffer<String> buffer = buffer(100)) {
+            buffer.put("1a");
+            buffer.put("2a");
+            buffer.put("1b");
+
+            assertEquals("1b", buffer.get(1));
+            assertEquals(2, buffer.flush());
+            assertEquals(1, writes.size());
+            assertEquals(Set.of("1b", "2a"), Set.copyOf(writes.get(0)));
+            assertNull(buffer.get(1));
+
+            WriteBehindStats stats = buffer.getStats();
+            assertEquals(3, stats.getUpdates());
+            assertEquals(1, stats.getCoalesced());
+            assertEquals(0, stats.getQueueDepth());
+            assertEquals(2, stats.getMaxQueueDepth());
+            assertEquals(1, stats.getFlushes());
+            assertEquals(2, stats.getFlushedRows());
+        }
+    }
+
+    @Test
+    void flush_WhenNewerValueArrivesMeanwhile_ShouldKeepItBuffered() {
+        try (WriteBehindBuffer<String> buffer = buffer(100)) {
+            buffer.put("1a");
+            duringWrite = value -> {
+                if (value.equals("1a")) buffer.put("1b");
+            };
+
+            buffer.flush();
+
+            assertEquals("1b", buffer.get(1));
+            duringWrite = value -> {
+            };
+        }
+        assertEquals(List.of(List.of("1a"), List.of("1b")), writes);
+    }
+
+    @Test
+    void flush_WhenRowsAreRejected_ShouldRetryThemNextTime() {
+        try (WriteBehindBuffer<String> buffer = buffer(100)) {
+            rejected = Set.of("2a");
+            buffer.put("1a");
+            buffer.put("2a");
+
+            assertEquals(1, buffer.flush());
+            assertEquals("2a", buffer.get(2));
+            assertEquals(1, buffer.getStats().getFailedRows());
+
+            rejected = Set.of();
+            assertEquals(1, buffer.flush());
+            assertNull(buffer.get(2));
+        }
+    }
+
+    @Test
+    void flush_WhenRowsAreRejectedMaxAttemptsTimes_ShouldMoveThemToTheDeadLetters() {
+        WriteBehindConfig config = WriteBehindConfig.builder().maxAttempts(2).flushIntervalMillis(60_000).flushOnShutdown(false).build();
+        try (WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>(this::write, value -> value.charAt(0) - '0', config)) {
+            rejected = Set.of("2a");
+            buffer.put("2a");
+
+            buffer.flush();
+            assertEquals("2a", buffer.get(2));
+            buffer.flush();
+
+            assertNull(buffer.get(2));
+            assertEquals(1, buffer.getStats().getDeadLetters());
+            assertEquals(List.of("2a"), buffer.drainDeadLetters());
+            assertEquals(List.of(), buffer.drainDeadLetters());
+        }
+    }
+
+    @Test
+    void flushIds_ShouldWriteOnlyTheBufferedValuesOfThoseIds() {
+        try (WriteBehindBuffer<String> buffer = buffer(100)) {
+            buffer.put("1a");
+            buffer.put("2a");
+
+            buffer.flush(List.of(1, 3));
+
+            assertEquals(List.of(List.of("1a")), writes);
+            assertNull(buffer.get(1));
+            assertEquals("2a", buffer.get(2));
+        }
+    }
+
+    @Test
+    void put_WhenMaxPendingReached_ShouldFlushWithoutWaitingForTheInterval() throws InterruptedException {
+        try (WriteBehindBuffer<String> buffer = buffer(2)) {
+            buffer.put("1a");
+            buffer.put("2a");
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (buffer.getStats().getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, buffer.getStats().getQueueDepth());
+            assertEquals(1, writes.size());
+        }
+    }
+
+    @Test
+    void close_ShouldFlushWhatIsLeftAndRejectNewUpdates() {
+        WriteBehindBuffer<String> buffer = buffer(100);
+        buffer.put("1a");
+
+        buffer.close();
+
+        assertEquals(List.of(List.of("1a")), writes);
+        assertThrows(IllegalStateException.class, () -> buffer.put("2a"));
+    }
+}
@@ -3,6 +3,7 @@ package anhembi.crud.service;
 import anhembi.crud.domain.Anime;
 import anhembi.crud.domain.Producer;
 import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.Page;
 
 
 import anhembi.crud.service.AnimeService;
@@ -58,22 +59,35 @@ class AnimeServiceTest {
                 Anime.builder().id(1).name("SampleAnime1").episodes(25).producer(Producer.builder().id(1).name("SampleProducer1").build()).build(),
                 Anime.builder().id(2).name("SampleAnime2").episodes(30).producer(Producer.builder().id(2).name("SampleProducer2").build()).build()
         );
-        when(animeRepository.findByName("SampleName")).thenReturn(mockAnimes);
+        when(animeRepository.findByName(eq("SampleName"), anyInt(), isNull())).thenReturn(new Page<>(mockAnimes, null));
 
 
         animeService.findByName();
 
-        verify(animeRepository, times(1)).findByName("SampleName");
+        verify(animeRepository, times(1)).findByName(eq("SampleName"), anyInt(), isNull());
     }
 
     @Test
     public void findByName_NoAnimesFound_PrintsNoAnimes() {
         when(animeService.SCANNER.nextLine()).thenReturn("NonExistentName");
-        when(animeRepository.findByName("NonExistentName")).thenReturn(Collections.emptyList());
+        when(animeRepository.findByName(eq("NonExistentName"), anyInt(), isNull())).thenReturn(new Page<>(Collections.emptyList(), null));
 
         animeService.findByName();
 
-        verify(animeRepository, times(1)).findByName("NonExistentName");
+        verify(animeRepository, times(1)).findByName(eq("NonExistentName"), anyInt(), isNull());
+    }
+
+    @Test
+    public void findByName_MultiplePages_FetchesEveryPage() {
+        when(animeService.SCANNER.nextLine()).thenReturn("");
+        Anime first = Anime.builder().id(1).name("SampleAnime1").episodes(25).producer(Producer.builder().id(1).name("SampleProducer1").build()).build();
+        Anime second = Anime.builder().id(2).name("SampleAnime2").episodes(30).producer(Producer.builder().id(1).name("SampleProducer1").build()).build();
+        when(animeRepository.findByName(eq(""), anyInt(), isNull())).thenReturn(new Page<>(List.of(first), "next"));
+        when(animeRepository.findByName(eq(""), anyInt(), eq("next"))).thenReturn(new Page<>(List.of(second), null));
+
+        animeService.findByName();
+
+        verify(animeRepository, times(2)).findByName(eq(""), anyInt(), any());
     }
 
     //---------------------------------------------------------------------------------------------------------------------------------------------------------
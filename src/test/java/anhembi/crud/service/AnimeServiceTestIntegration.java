@@ -4,6 +4,7 @@ package anhembi.crud.service;
 import anhembi.crud.domain.Anime;
 import anhembi.crud.domain.Producer;
 import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.Page;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -195,7 +196,7 @@ class AnimeServiceTestIntegration {
         expectedAnimes.add(Anime.builder().id(1).name("Anime1").episodes(10).producer(Producer.builder().id(1).name("Studio1").build()).build());
         expectedAnimes.add(Anime.builder().id(2).name("Anime2").episodes(12).producer(Producer.builder().id(2).name("Studio2").build()).build());
 
-        when(animeRepositoryMock.findByName("")).thenReturn(expectedAnimes);
+        when(animeRepositoryMock.findByName(eq(""), anyInt(), isNull())).thenReturn(new Page<>(expectedAnimes, null));
 
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outContent));
@@ -220,7 +221,7 @@ class AnimeServiceTestIntegration {
         expectedAnimes.add(Anime.builder().id(1).name("Anime1").episodes(10).producer(Producer.builder().id(1).name("Studio1").build()).build());
         expectedAnimes.add(Anime.builder().id(2).name("Anime2").episodes(12).producer(Producer.builder().id(2).name("Studio2").build()).build());
 
-        when(animeRepositoryMock.findByName("Anime")).thenReturn(expectedAnimes);
+        when(animeRepositoryMock.findByName(eq("Anime"), anyInt(), isNull())).thenReturn(new Page<>(expectedAnimes, null));
 
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outContent));
@@ -3,6 +3,7 @@ package anhembi.crud.service;
 
 import anhembi.crud.domain.Producer;
 import anhembi.crud.repository.AnimeRepository;
+import anhembi.crud.repository.Page;
 import anhembi.crud.repository.ProducerRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -57,11 +58,11 @@ class ProducerServiceTest {
                 Producer.builder().id(1).name(inputName).build(),
                 Producer.builder().id(2).name(inputName).build()
         );
-        when(producerRepository.findByName(inputName)).thenReturn(producers);
+        when(producerRepository.findByName(eq(inputName), anyInt(), isNull())).thenReturn(new Page<>(producers, null));
 
         producerService.findByName();
 
-        verify(producerRepository).findByName(inputName);
+        verify(producerRepository).findByName(eq(inputName), anyInt(), isNull());
     }
 
     @Test
@@ -69,11 +70,11 @@ class ProducerServiceTest {
         String inputName = "NonExistingProducer";
         when(producerService.SCANNER.nextLine()).thenReturn(inputName);
 
-        when(producerRepository.findByName(inputName)).thenReturn(Collections.emptyList());
+        when(producerRepository.findByName(eq(inputName), anyInt(), isNull())).thenReturn(new Page<>(Collections.emptyList(), null));
 
         producerService.findByName();
 
-        verify(producerRepository).findByName(inputName);
+        verify(producerRepository).findByName(eq(inputName), anyInt(), isNull());
     }
 
     @Test
@@ -84,11 +85,11 @@ class ProducerServiceTest {
                 Producer.builder().id(1).name("Producer1").build(),
                 Producer.builder().id(2).name("Producer2").build()
         );
-        when(producerRepository.findByName("")).thenReturn(producers);
+        when(producerRepository.findByName(eq(""), anyInt(), isNull())).thenReturn(new Page<>(producers, null));
 
         producerService.findByName();
 
-        verify(producerRepository).findByName("");
+        verify(producerRepository).findByName(eq(""), anyInt(), isNull());
     }
 
     //---------------------------------------------------------------------------------------------------------------------------
@@ -2,6 +2,7 @@ package anhembi.crud.service;
 
 import anhembi.crud.conn.ConnectionFactory;
 import anhembi.crud.domain.Producer;
+import anhembi.crud.repository.Page;
 import anhembi.crud.repository.ProducerRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -100,6 +101,8 @@ class ProducerServiceTestIntegration {
 
         when(producerRepositoryMock.findById(existingProducerId)).thenReturn(Optional.of(expectedProducer));
 
+        when(producerRepositoryMock.findByName(anyString(), anyInt(), isNull())).thenReturn(new Page<>(List.of(), null));
+
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outContent));
 
@@ -120,6 +123,8 @@ class ProducerServiceTestIntegration {
 
         when(producerRepositoryMock.findById(nonExistingProducerId)).thenReturn(Optional.empty());
 
+        when(producerRepositoryMock.findByName(anyString(), anyInt(), isNull())).thenReturn(new Page<>(List.of(), null));
+
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outContent));
 
@@ -190,7 +195,7 @@ class ProducerServiceTestIntegration {
         ProducerRepository producerRepositoryMock = mock(ProducerRepository.class);
         producerService.producerRepository = producerRepositoryMock;
 
-        when(producerRepositoryMock.findByName(existingProducerName)).thenReturn(List.of(Producer.builder().name(existingProducerName).build()));
+        when(producerRepositoryMock.findByName(eq(existingProducerName), anyInt(), isNull())).thenReturn(new Page<>(List.of(Producer.builder().name(existingProducerName).build()), null));
 
         ByteArrayOutputStream outContent = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outContent));